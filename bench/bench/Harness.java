@@ -0,0 +1,99 @@
+package bench;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Minimal JMH-style runner: warmup and measurement iterations of a fixed
+ * duration, reporting throughput, average latency and allocation per
+ * operation (what JMH's {@code -prof gc} calls gc.alloc.rate.norm).
+ */
+final class Harness {
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private final int warmupIterations = Integer.getInteger("bench.warmup", 3);
+    private final int measureIterations = Integer.getInteger("bench.iterations", 5);
+    private final long iterationNanos = Long.getLong("bench.iterationMs", 1000) * 1_000_000;
+
+    // results are stored here so the JIT cannot drop the measured calls
+    private Object sink;
+
+    /** A measured operation. {@link #prepare} runs before every call and is not timed. */
+    abstract static class Benchmark {
+        final String name;
+
+        Benchmark(String name) {
+            this.name = name;
+        }
+
+        void prepare(int i) throws Exception {
+        }
+
+        abstract Object run(int i) throws Exception;
+
+        /** True when {@link #prepare} must run before each call, so calls are timed one by one. */
+        boolean perCallSetup() {
+            return false;
+        }
+
+        /** Upper bound on calls per iteration, for operations that consume their input. */
+        int maxOps() {
+            return Integer.MAX_VALUE;
+        }
+    }
+
+    void run(int size, Benchmark benchmark) throws Exception {
+        for (int w = 0; w < warmupIterations; w++) {
+            iteration(benchmark);
+        }
+
+        long ops = 0;
+        long nanos = 0;
+        long bytes = 0;
+        for (int m = 0; m < measureIterations; m++) {
+            long[] r = iteration(benchmark);
+            ops += r[0];
+            nanos += r[1];
+            bytes += r[2];
+        }
+
+        double seconds = nanos / 1e9;
+        System.out.println(String.format("%-28s %9d %14.1f %14.3f %14.0f %12.1f",
+                benchmark.name, size, ops / seconds, nanos / 1e3 / ops, (double) bytes / ops,
+                bytes / 1048576.0 / seconds));
+    }
+
+    private long[] iteration(Benchmark benchmark) throws Exception {
+        long thread = Thread.currentThread().getId();
+        long ops = 0;
+        long nanos = 0;
+        long bytes = 0;
+        int limit = benchmark.maxOps();
+
+        // cheap operations are timed in growing batches so the clock reads do not dominate
+        int batch = 1;
+
+        while (nanos < iterationNanos && ops < limit) {
+            int n = (int) Math.min(batch, limit - ops);
+            if (benchmark.perCallSetup())
+                benchmark.prepare((int) ops);
+            long allocated = THREADS.getThreadAllocatedBytes(thread);
+            long start = System.nanoTime();
+            for (int i = 0; i < n; i++)
+                sink = benchmark.run((int) ops + i);
+            long elapsed = System.nanoTime() - start;
+            nanos += elapsed;
+            bytes += THREADS.getThreadAllocatedBytes(thread) - allocated;
+            ops += n;
+            if (!benchmark.perCallSetup() && elapsed < 100_000 && batch < 4096)
+                batch *= 2;
+        }
+        return new long[] { ops, nanos, bytes };
+    }
+
+    static String header() {
+        return String.format("%-28s %9s %14s %14s %14s %12s",
+                "Benchmark", "Tasks", "ops/s", "avg us/op", "alloc B/op", "alloc MB/s");
+    }
+}
@@ -0,0 +1,151 @@
+package bench;
+
+import server.TaskServer;
+import service.TaskService;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Load generator for {@code task serve}: starts a {@link TaskServer} in this
+ * process over a synthetic store in the current directory, then runs
+ * closed-loop clients against it and reports requests per second and
+ * latency percentiles. Must be started from a scratch directory (see
+ * scripts/load.sh).
+ *
+ * Properties: load.tasks (store size, default 10000), load.clients
+ * (default 16), load.seconds (default 10), load.writes (fraction of
+ * requests that change a task, default 0.1), task.serve.threads.
+ */
+public final class ServerLoad {
+
+    private static final String[] STATUSES = { "todo", "in_progress", "done" };
+
+    public static void main(String[] args) throws Exception {
+        if (!Boolean.getBoolean("bench.scratch")) {
+            System.err.println("Execute via scripts/load.sh: o teste de carga sobrescreve tasks.json no diretório atual.");
+            System.exit(1);
+        }
+
+        int tasks = Integer.getInteger("load.tasks", 10_000);
+        int clients = Integer.getInteger("load.clients", 16);
+        long seconds = Long.getLong("load.seconds", 10);
+        double writes = Double.parseDouble(System.getProperty("load.writes", "0.1"));
+
+        TaskService service = new TaskService();
+        service.beginBatch();
+        for (int i = 1; i <= tasks; i++) {
+            service.addTask("Task number " + i + " with some descriptive text");
+        }
+        service.endBatch();
+
+        TaskServer server = new TaskServer(service, 0, TaskServer.defaultThreads());
+        server.start();
+        String base = "http://localhost:" + server.getPort();
+        HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+        // a short warmup so the JIT has compiled the request path before measuring
+        run(http, base, clients, 2_000_000_000L, tasks, writes);
+        Result result = run(http, base, clients, seconds * 1_000_000_000L, tasks, writes);
+        server.stop();
+
+        long[] latencies = result.latencies;
+        Arrays.sort(latencies);
+        System.out.printf("%-10s %8s %8s %12s %10s %10s %10s %8s%n",
+                "Clients", "Threads", "Writes", "req/s", "p50 us", "p99 us", "max us", "errors");
+        System.out.printf("%-10d %8d %8.2f %12.1f %10.1f %10.1f %10.1f %8d%n",
+                clients, TaskServer.defaultThreads(), writes, latencies.length / (result.nanos / 1e9),
+                percentile(latencies, 0.50) / 1e3, percentile(latencies, 0.99) / 1e3,
+                latencies.length == 0 ? 0 : latencies[latencies.length - 1] / 1e3, result.errors);
+    }
+
+    private static final class Result {
+        long[] latencies;
+        long nanos;
+        int errors;
+    }
+
+    private static Result run(HttpClient http, String base, int clients, long nanos, int tasks, double writes)
+            throws InterruptedException {
+        long[][] perClient = new long[clients][];
+        int[] counts = new int[clients];
+        int[] errors = new int[clients];
+        CountDownLatch done = new CountDownLatch(clients);
+        long start = System.nanoTime();
+        long end = start + nanos;
+
+        for (int c = 0; c < clients; c++) {
+            int client = c;
+            Thread thread = new Thread(() -> {
+                long[] latencies = new long[1024];
+                int n = 0;
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    for (long now = System.nanoTime(); now < end; now = System.nanoTime()) {
+                        HttpRequest request = nextRequest(base, random, tasks, writes);
+                        long sent = System.nanoTime();
+                        int status;
+                        try {
+                            status = http.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                        } catch (Exception e) {
+                            status = -1;
+                        }
+                        if (status < 200 || status >= 300 && status != 404)
+                            errors[client]++;
+                        if (n == latencies.length)
+                            latencies = Arrays.copyOf(latencies, n * 2);
+                        latencies[n++] = System.nanoTime() - sent;
+                    }
+                } finally {
+                    perClient[client] = latencies;
+                    counts[client] = n;
+                    done.countDown();
+                }
+            }, "load-client-" + c);
+            thread.start();
+        }
+        done.await();
+
+        Result result = new Result();
+        result.nanos = System.nanoTime() - start;
+        int total = 0;
+        for (int c = 0; c < clients; c++) {
+            total += counts[c];
+            result.errors += errors[c];
+        }
+        result.latencies = new long[total];
+        int at = 0;
+        for (int c = 0; c < clients; c++) {
+            System.arraycopy(perClient[c], 0, result.latencies, at, counts[c]);
+            at += counts[c];
+        }
+        return result;
+    }
+
+    /** Reads are single-task lookups and small pages; writes are status changes and adds. */
+    private static HttpRequest nextRequest(String base, ThreadLocalRandom random, int tasks, double writes) {
+        int id = 1 + random.nextInt(tasks);
+        if (random.nextDouble() < writes) {
+            if (random.nextInt(10) == 0)
+                return HttpRequest.newBuilder(URI.create(base + "/tasks"))
+                        .POST(HttpRequest.BodyPublishers.ofString("Load task " + id)).build();
+            return HttpRequest.newBuilder(URI.create(base + "/tasks/" + id + "/status"))
+                    .PUT(HttpRequest.BodyPublishers.ofString(STATUSES[random.nextInt(2)])).build();
+        }
+        if (random.nextBoolean())
+            return HttpRequest.newBuilder(URI.create(base + "/tasks/" + id)).GET().build();
+        return HttpRequest.newBuilder(URI.create(base + "/tasks?status=todo&limit=20&offset=" + random.nextInt(100)))
+                .GET().build();
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0)
+            return 0;
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1)];
+    }
+}
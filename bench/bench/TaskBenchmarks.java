@@ -0,0 +1,276 @@
+package bench;
+
+import model.Status;
+import model.Task;
+import model.TaskJsonWriter;
+import repository.TaskRepository;
+import service.TaskQuery;
+import service.TaskService;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.lang.ref.Reference;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Benchmarks for the storage, parsing and service paths, run against
+ * synthetic stores written to the current directory. Must be started from
+ * a scratch directory (see scripts/bench.sh).
+ *
+ * Properties: bench.sizes (default 1000,100000), bench.filter (substring of
+ * the benchmark name), bench.warmup, bench.iterations, bench.iterationMs.
+ */
+public final class TaskBenchmarks {
+
+    private static final Path ACTIVE = Path.of("tasks.json");
+    private static final Path DELETED = Path.of("deleted_tasks.json");
+    private static final Path PRISTINE_ACTIVE = Path.of("tasks.json.pristine");
+    private static final Path PRISTINE_DELETED = Path.of("deleted_tasks.json.pristine");
+
+    private static final LocalDateTime NOW = LocalDateTime.now();
+
+    private final Harness harness = new Harness();
+    private final String filter = System.getProperty("bench.filter", "");
+
+    public static void main(String[] args) throws Exception {
+        if (!Boolean.getBoolean("bench.scratch")) {
+            System.err.println("Execute via scripts/bench.sh: os benchmarks sobrescrevem tasks.json no diretório atual.");
+            System.exit(1);
+        }
+
+        TaskBenchmarks benchmarks = new TaskBenchmarks();
+        System.out.println(Harness.header());
+        benchmarks.recordBenchmarks();
+        for (String size : System.getProperty("bench.sizes", "1000,100000").split(",")) {
+            benchmarks.storeBenchmarks(Integer.parseInt(size.strip()));
+        }
+    }
+
+    /** Single-record codec costs do not depend on the store size. */
+    private void recordBenchmarks() throws Exception {
+        List<Task> samples = generate(1024, 0.0);
+        String[] json = samples.stream().map(Task::toJson).toArray(String[]::new);
+
+        run(1, new Harness.Benchmark("Task.fromJson") {
+            @Override
+            Object run(int i) {
+                return Task.fromJson(json[i & 1023]);
+            }
+        });
+        run(1, new Harness.Benchmark("Task.toJson") {
+            @Override
+            Object run(int i) {
+                return samples.get(i & 1023).toJson();
+            }
+        });
+    }
+
+    private void storeBenchmarks(int size) throws Exception {
+        // a tenth of the tasks are DONE long enough ago to be moved to the trash
+        writeStore(generate(size, 0.1), PRISTINE_ACTIVE);
+        writeStore(new ArrayList<>(), PRISTINE_DELETED);
+        restore();
+
+        TaskRepository repository = new TaskRepository();
+        if ("footprint".contains(filter) || filter.isEmpty())
+            footprint(size, repository);
+
+        run(size, new Harness.Benchmark("repository.loadActiveTasks") {
+            @Override
+            Object run(int i) {
+                return repository.loadActiveTasks();
+            }
+        });
+
+        List<Task> active = repository.loadActiveTasks();
+        List<Task> deleted = repository.loadDeletedTasks();
+        run(size, new Harness.Benchmark("repository.saveAll") {
+            @Override
+            Object run(int i) {
+                repository.saveAll(active, deleted);
+                return active;
+            }
+        });
+
+        run(size, new Harness.Benchmark("service.startup+maintenance") {
+            @Override
+            boolean perCallSetup() {
+                return true;
+            }
+
+            @Override
+            void prepare(int i) throws IOException {
+                restore();
+            }
+
+            @Override
+            Object run(int i) {
+                return new TaskService();
+            }
+        });
+
+        restore();
+        TaskService service = new TaskService();
+        List<Integer> ids = service.getActive().stream().map(Task::getId).toList();
+
+        run(size, new Harness.Benchmark("service.runMaintenance") {
+            @Override
+            Object run(int i) {
+                service.runMaintenance();
+                return service;
+            }
+        });
+        run(size, new Harness.Benchmark("service.findById") {
+            @Override
+            Object run(int i) {
+                return service.findById(ids.get((int) ((i * 7919L) % ids.size())));
+            }
+        });
+        // a selective term, a prefix over ~111 terms, an AND with a common term and an OR
+        String[] queries = { String.valueOf(size / 2), (size / 1000) + "*",
+                "synthetic " + (size / 3), (size / 4) + " OR " + (size / 5) };
+        service.search(queries[0]); // builds (and persists) the index outside the measurement
+        run(size, new Harness.Benchmark("service.search") {
+            @Override
+            Object run(int i) {
+                return service.search(queries[i & 3]);
+            }
+        });
+        // one page of the most recently updated IN_PROGRESS tasks, deep enough to skip some
+        TaskQuery page = new TaskQuery();
+        page.setStatus(Status.IN_PROGRESS);
+        page.setSince(NOW.minusHours(5));
+        page.setSort(TaskQuery.Sort.UPDATED);
+        page.setOffset(100);
+        page.setLimit(50);
+        service.list(page).count(); // builds the query index outside the measurement
+        run(size, new Harness.Benchmark("service.list(page)") {
+            @Override
+            Object run(int i) {
+                return service.list(page).toList();
+            }
+        });
+        run(size, new Harness.Benchmark("service.updateStatus") {
+            @Override
+            boolean perCallSetup() {
+                return true;
+            }
+
+            @Override
+            Object run(int i) {
+                int id = ids.get((int) ((i * 7919L) % ids.size()));
+                return service.updateStatus(id, (i & 1) == 0 ? Status.IN_PROGRESS : Status.TODO);
+            }
+        });
+        run(size, new Harness.Benchmark("service.delete") {
+            private int cursor;
+
+            @Override
+            boolean perCallSetup() {
+                return true;
+            }
+
+            @Override
+            void prepare(int i) {
+                // keeps the store at a constant size while tasks are consumed
+                service.addTask("bench replacement " + i);
+            }
+
+            @Override
+            Object run(int i) {
+                return service.delete(ids.get(cursor++));
+            }
+
+            @Override
+            int maxOps() {
+                // every iteration gets its own share of the original ids
+                return ids.size() / (Integer.getInteger("bench.warmup", 3) + Integer.getInteger("bench.iterations", 5));
+            }
+        });
+
+        // the same updates written behind: the caller only pays for the in-memory change
+        restore();
+        try (TaskService behind = new TaskService(50, 1000)) {
+            run(size, new Harness.Benchmark("service.update(write-behind)") {
+                @Override
+                boolean perCallSetup() {
+                    return true;
+                }
+
+                @Override
+                Object run(int i) {
+                    int id = ids.get((int) ((i * 7919L) % ids.size()));
+                    return behind.updateStatus(id, (i & 1) == 0 ? Status.IN_PROGRESS : Status.TODO);
+                }
+            });
+        }
+    }
+
+    /** Heap retained per loaded task, including its slot in the list; printed outside the table. */
+    private static void footprint(int size, TaskRepository repository) {
+        long before = usedHeap();
+        List<Task> tasks = repository.loadActiveTasks();
+        long after = usedHeap();
+        System.out.println(String.format("%-28s %9d %14.1f bytes/task", "footprint.loadActiveTasks", size,
+                (double) (after - before) / tasks.size()));
+        Reference.reachabilityFence(tasks);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++)
+            System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private void run(int size, Harness.Benchmark benchmark) throws Exception {
+        if (benchmark.name.contains(filter)) {
+            harness.run(size, benchmark);
+        }
+    }
+
+    private static List<Task> generate(int count, double expiredDoneRatio) {
+        List<Task> tasks = new ArrayList<>(count);
+        int expiredEvery = expiredDoneRatio > 0 ? (int) Math.round(1 / expiredDoneRatio) : 0;
+        for (int id = 1; id <= count; id++) {
+            boolean expired = expiredEvery > 0 && id % expiredEvery == 0;
+            Status status = expired ? Status.DONE : Status.values()[id % 2];
+            LocalDateTime updated = expired ? NOW.minusDays(3) : NOW.minusMinutes(id % 600);
+            tasks.add(new Task(id, "Synthetic task " + id + " for benchmarking the store",
+                    status, updated.minusDays(1), updated, null));
+        }
+        return tasks;
+    }
+
+    private static void writeStore(List<Task> tasks, Path path) throws IOException {
+        try (TaskJsonWriter out = new TaskJsonWriter(
+                new OutputStreamWriter(Files.newOutputStream(path), StandardCharsets.UTF_8))) {
+            out.writeArray(tasks);
+        }
+    }
+
+    private static void restore() throws IOException {
+        Files.copy(PRISTINE_ACTIVE, ACTIVE, StandardCopyOption.REPLACE_EXISTING);
+        Files.copy(PRISTINE_DELETED, DELETED, StandardCopyOption.REPLACE_EXISTING);
+        Files.deleteIfExists(Path.of("tasks.journal"));
+        Files.deleteIfExists(Path.of("tasks.journal.compacting"));
+        Files.deleteIfExists(Path.of("tasks.idx"));
+        Files.deleteIfExists(Path.of("tasks.json.cache"));
+        Files.deleteIfExists(Path.of("deleted_tasks.json.cache"));
+        Path trash = Path.of("trash");
+        if (Files.isDirectory(trash)) {
+            try (Stream<Path> files = Files.list(trash)) {
+                for (Path file : (Iterable<Path>) files::iterator)
+                    Files.delete(file);
+            }
+            Files.delete(trash);
+        }
+    }
+}
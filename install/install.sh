@@ -15,17 +15,24 @@ mkdir -p "$BIN_DIR"
 
 # Compila todo o código Java
 echo "Compilando código Java..."
-javac -d "$OUT_DIR" $(find "$SRC_DIR" -name "*.java")
+javac -encoding UTF-8 -d "$OUT_DIR" $(find "$SRC_DIR" -name "*.java")
 if [ $? -ne 0 ]; then
     echo "[ERROR] Falha na compilação."
     exit 1
 fi
 
+# Gera o arquivo AppCDS a partir de uma execução de treino
+echo "Gerando arquivo de class-data sharing..."
+"$PROJECT_DIR/scripts/cds.sh" "$OUT_DIR"
+
 # Cria script wrapper
 echo "Criando script de execução..."
 cat > "$TASK_WRAPPER" << EOF
 #!/bin/bash
-java -cp "$OUT_DIR" Main "\$@"
+if [ -f "$OUT_DIR/cds/task.jsa" ]; then
+    exec java -XX:SharedArchiveFile="$OUT_DIR/cds/task.jsa" -Xshare:auto -cp "$OUT_DIR/cds/task.jar" Main "\$@"
+fi
+exec java -cp "$OUT_DIR" Main "\$@"
 EOF
 
 # Dá permissão de execução automaticamente
@@ -0,0 +1,20 @@
+#!/bin/bash
+# Roda os benchmarks de bench/ contra stores sintéticos em um diretório temporário.
+# Uso: scripts/bench.sh [-Dbench.sizes=1000,100000,1000000] [-Dbench.filter=...] [-Dtask.storage=journal]
+
+SCRIPT_DIR="$(cd "$(dirname "$0")" && pwd)"
+PROJECT_DIR="$(cd "$SCRIPT_DIR/.." && pwd)"
+BUILD_DIR="$PROJECT_DIR/out/bench"
+BENCH_DIR="$(mktemp -d)"
+
+rm -rf "$BUILD_DIR"
+mkdir -p "$BUILD_DIR"
+javac -encoding UTF-8 -d "$BUILD_DIR" $(find "$PROJECT_DIR/src" "$PROJECT_DIR/bench" -name "*.java") || exit 1
+
+cd "$BENCH_DIR"
+java -Xmx4g -Dbench.scratch=true "$@" -cp "$BUILD_DIR" bench.TaskBenchmarks
+STATUS=$?
+
+cd /
+rm -rf "$BENCH_DIR"
+exit $STATUS
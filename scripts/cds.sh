@@ -0,0 +1,38 @@
+#!/bin/bash
+# Gera o arquivo AppCDS (class-data sharing) usado pelo wrapper do task.
+# O CDS só arquiva classes vindas de JAR, então as classes compiladas são
+# empacotadas em <out>/cds/task.jar e o arquivo fica em <out>/cds/task.jsa.
+# Uso: scripts/cds.sh <diretório com os .class>
+
+OUT_DIR="$(cd "$1" && pwd)"
+CDS_DIR="$OUT_DIR/cds"
+JAR="$CDS_DIR/task.jar"
+ARCHIVE="$CDS_DIR/task.jsa"
+TRAIN_DIR="$(mktemp -d)"
+
+rm -rf "$CDS_DIR"
+mkdir -p "$CDS_DIR"
+(cd "$OUT_DIR" && jar cf "$JAR" $(find . -name "*.class" -not -path "./cds/*"))
+
+# Execução de treino em um diretório vazio, sem tocar nas tasks do usuário
+cd "$TRAIN_DIR"
+i=0
+for cmd in "add treino" "list" "update 1 in_progress" "done 1" "delete 1" "deleted" "trash-clear" "help"; do
+    java -XX:DumpLoadedClassList="$TRAIN_DIR/classes.$i.lst" -cp "$JAR" Main $cmd > /dev/null
+    i=$((i + 1))
+done
+cat "$TRAIN_DIR"/classes.*.lst | awk '!seen[$0]++' > "$TRAIN_DIR/classes.lst"
+
+java -Xshare:dump -XX:SharedClassListFile="$TRAIN_DIR/classes.lst" \
+    -XX:SharedArchiveFile="$ARCHIVE" -cp "$JAR" > /dev/null 2>&1
+STATUS=$?
+
+cd /
+rm -rf "$TRAIN_DIR"
+
+if [ $STATUS -ne 0 ]; then
+    echo "[WARN] Não foi possível gerar o arquivo CDS; o task vai rodar sem ele."
+    rm -rf "$CDS_DIR"
+    exit 0
+fi
+echo "Arquivo CDS gerado em $ARCHIVE"
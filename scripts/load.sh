@@ -0,0 +1,20 @@
+#!/bin/bash
+# Teste de carga da API HTTP (task serve) contra um store sintético em um diretório temporário.
+# Uso: scripts/load.sh [-Dload.tasks=10000] [-Dload.clients=16] [-Dload.seconds=10] [-Dload.writes=0.1] [-Dtask.serve.threads=n]
+
+SCRIPT_DIR="$(cd "$(dirname "$0")" && pwd)"
+PROJECT_DIR="$(cd "$SCRIPT_DIR/.." && pwd)"
+BUILD_DIR="$PROJECT_DIR/out/bench"
+BENCH_DIR="$(mktemp -d)"
+
+rm -rf "$BUILD_DIR"
+mkdir -p "$BUILD_DIR"
+javac -encoding UTF-8 -d "$BUILD_DIR" $(find "$PROJECT_DIR/src" "$PROJECT_DIR/bench" -name "*.java") || exit 1
+
+cd "$BENCH_DIR"
+java -Dbench.scratch=true "$@" -cp "$BUILD_DIR" bench.ServerLoad
+STATUS=$?
+
+cd /
+rm -rf "$BENCH_DIR"
+exit $STATUS
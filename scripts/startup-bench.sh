@@ -0,0 +1,49 @@
+#!/bin/bash
+# Mede o tempo de inicialização de help, list e add, com e sem o arquivo CDS.
+# Uso: scripts/startup-bench.sh [diretório com os .class] [execuções] [tasks]
+
+SCRIPT_DIR="$(cd "$(dirname "$0")" && pwd)"
+OUT_DIR="$(cd "${1:-$SCRIPT_DIR/../out}" && pwd)"
+RUNS="${2:-20}"
+TASKS="${3:-1000}"
+BENCH_DIR="$(mktemp -d)"
+
+# Store sintético para que list e add tenham algo para carregar
+awk -v n="$TASKS" 'BEGIN {
+    print "[";
+    for (i = 1; i <= n; i++) {
+        printf "  {\"id\": %d, \"description\": \"Task %d\", \"status\": \"Todo\", \"createdAt\": \"2026-01-01T10:00:00\", \"updatedAt\": \"2026-01-01T10:00:00\"}%s\n", i, i, (i < n ? "," : "");
+    }
+    print "]";
+}' > "$BENCH_DIR/tasks.json"
+
+measure() {
+    local label="$1"
+    shift
+    local start end
+    start=$(date +%s%N)
+    for ((i = 0; i < RUNS; i++)); do
+        java "$@" > /dev/null
+    done
+    end=$(date +%s%N)
+    awk -v l="$label" -v t="$((end - start))" -v n="$RUNS" 'BEGIN { printf "  %-6s %6.1f ms\n", l, t / n / 1000000 }'
+}
+
+cd "$BENCH_DIR"
+for mode in "sem CDS" "com CDS"; do
+    OPTS="-cp $OUT_DIR"
+    if [ "$mode" = "com CDS" ]; then
+        if [ ! -f "$OUT_DIR/cds/task.jsa" ]; then
+            echo "$mode: $OUT_DIR/cds/task.jsa não encontrado (rode scripts/cds.sh)"
+            continue
+        fi
+        OPTS="-XX:SharedArchiveFile=$OUT_DIR/cds/task.jsa -Xshare:auto -cp $OUT_DIR/cds/task.jar"
+    fi
+    echo "$mode ($TASKS tasks, média de $RUNS execuções):"
+    measure help $OPTS Main help
+    measure list $OPTS Main list
+    measure add $OPTS Main add bench
+done
+
+cd /
+rm -rf "$BENCH_DIR"
@@ -0,0 +1,23 @@
+#!/bin/bash
+# Roda cada teste de test/ (classes *Test com main) em um diretório temporário próprio.
+# Uso: scripts/test.sh [-Dtask.fsync=false]
+
+SCRIPT_DIR="$(cd "$(dirname "$0")" && pwd)"
+PROJECT_DIR="$(cd "$SCRIPT_DIR/.." && pwd)"
+BUILD_DIR="$PROJECT_DIR/out/test"
+
+rm -rf "$BUILD_DIR"
+mkdir -p "$BUILD_DIR"
+javac -encoding UTF-8 -d "$BUILD_DIR" $(find "$PROJECT_DIR/src" "$PROJECT_DIR/test" -name "*.java") || exit 1
+
+STATUS=0
+for FILE in $(cd "$PROJECT_DIR/test" && find . -name "*Test.java" | sort); do
+    CLASS="$(echo "${FILE#./}" | sed 's|\.java$||; s|/|.|g')"
+    TEST_DIR="$(mktemp -d)"
+    (cd "$TEST_DIR" && java -ea -Dtest.scratch=true "$@" -cp "$BUILD_DIR" "$CLASS") || {
+        echo "[ERROR] $CLASS falhou."
+        STATUS=1
+    }
+    rm -rf "$TEST_DIR"
+done
+exit $STATUS
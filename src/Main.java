@@ -1,153 +1,105 @@
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.Arrays;
-import java.util.List;
-import java.util.stream.Collectors;
 
+import cli.TaskCommands;
+import daemon.DaemonClient;
+import daemon.TaskDaemon;
+import metrics.Metrics;
+import server.TaskServer;
 import service.TaskService;
-import model.Status;
-import model.Task;
 
 public class Main {
-    private static final TaskService taskService = new TaskService();
 
     public static void main(String[] args) {
-        if (args.length == 0) {
-            printHelp();
-            return;
-        }
-
-        String command = args[0].toLowerCase();
-
+        boolean profile = Arrays.asList(args).contains("--profile");
+        if (profile)
+            args = Arrays.stream(args).filter(arg -> !arg.equals("--profile")).toArray(String[]::new);
+        String metricsFile = System.getProperty("task.metrics.file");
+        if (profile || metricsFile != null || Boolean.getBoolean("task.jfr"))
+            Metrics.enable();
+
+        String command = args.length > 0 ? args[0].toLowerCase() : "help";
         try {
-            switch (command) {
-                case "add":
-                    if (args.length > 1) {
-                        String description = Arrays.stream(args).skip(1).collect(Collectors.joining(" "));
-                        taskService.addTask(description);
-                        System.out.println("[INFO] Task criada: \"" + description + "\"");
-                    } else {
-                        System.out.println("[ERROR] Informe uma descrição.");
-                        System.out.println("Uso: task add <description>");
-                    }
-                    break;
-
-                case "list":
-                    System.out.println("--- Active Tasks ---");
-                    printTaskTable(taskService.getActive(), false);
-                    break;
-
-                case "done":
-                    if (args.length > 1) {
-                        int id = Integer.parseInt(args[1]);
-                        if (taskService.updateStatus(id, Status.DONE)) {
-                            System.out.println("[INFO] Task #" + id + " marcada como DONE.");
-                        } else {
-                            System.out.println("[ERROR] Task #" + id + " não encontrada.");
-                        }
-                    } else {
-                        System.out.println("[ERROR] Informe um ID.");
-                        System.out.println("Uso: task done <id>");
-                    }
-                    break;
-
-                case "update":
-                    if (args.length > 2) {
-                        int id = Integer.parseInt(args[1]);
-                        Status status = Status.fromValue(args[2]);
-
-                        if (taskService.updateStatus(id, status)) {
-                            System.out.println("[INFO] Task #" + id + " atualizada para " + status.getValue());
-                        } else {
-                            System.out.println("[ERROR] Task #" + id + " não encontrada.");
-                        }
-                    } else {
-                        System.out.println("[ERROR] Informe ID e status.");
-                        System.out.println("Uso: task update <id> <todo|in_progress|done>");
-                    }
-                    break;
-
-                case "delete":
-                    if (args.length > 1) {
-                        int id = Integer.parseInt(args[1]);
-
-                        if (taskService.delete(id)) {
-                            System.out.println("[INFO] Task #" + id + " movida para lixeira.");
-                        } else {
-                            System.out.println("[ERROR] Task #" + id + " não encontrada.");
-                        }
-                    } else {
-                        System.out.println("[ERROR] Informe um ID.");
-                        System.out.println("Uso: task delete <id>");
-                    }
-                    break;
-
-                case "deleted":
-                    System.out.println("--- Deleted Tasks ---");
-                    printTaskTable(taskService.getDeleted(), true);
-                    break;
+            run(args, command);
+        } finally {
+            if (profile)
+                Metrics.report(System.err);
+            if (metricsFile != null)
+                Metrics.append(Path.of(metricsFile), command);
+        }
+    }
 
-                case "trash-clear":
-                    taskService.emptyTrash();
-                    System.out.println("[INFO] Lixeira esvaziada com sucesso.");
-                    break;
+    private static void run(String[] args, String command) {
+        boolean daemonCommand = command.equals("daemon");
 
-                case "help":
-                default:
-                    printHelp();
-                    break;
-            }
-        } catch (NumberFormatException e) {
-            System.out.println("[ERROR] ID inválido. Use um número.");
-        } catch (IllegalArgumentException e) {
-            System.out.println("[ERROR] " + e.getMessage());
+        if (command.equals("help")) {
+            new TaskCommands(TaskService::new).execute(args, System.out);
+            return;
         }
-    }
 
-    private static void printTaskTable(List<Task> tasks, boolean isDeletedList) {
-        if (tasks.isEmpty()) {
-            System.out.println("Nenhuma tarefa encontrada.");
+        if (command.equals("watch")) {
+            // long-running, like serve; the daemon answers one reply per command
+            new TaskCommands(TaskService::new).execute(args, System.out);
             return;
         }
 
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-        String dateHeader = isDeletedList ? "Deleted At" : "Last Updated";
+        if (command.equals("batch") || command.equals("import") || command.equals("export")) {
+            // stdin is not forwarded to the daemon, whose replies are also buffered whole;
+            // the file lock keeps both writers consistent
+            new TaskCommands(TaskService::new).execute(args, System.in, System.out);
+            return;
+        }
 
-        System.out.printf("%-5s | %-12s | %-50s | %-25s%n", "ID", "Status", "Description", dateHeader);
-        System.out.println(
-                "------+--------------+----------------------------------------------------+--------------------------");
+        if (command.equals("serve")) {
+            serve(args);
+            return;
+        }
 
-        for (Task task : tasks) {
-            String description = task.getDescription();
-            if (description.length() > 48) {
-                description = description.substring(0, 45) + "...";
+        if (daemonCommand && args.length == 1) {
+            try {
+                new TaskDaemon().run();
+            } catch (IOException e) {
+                System.out.println("[ERROR] Não foi possível iniciar o daemon: " + e.getMessage());
             }
+            return;
+        }
 
-            LocalDateTime date = isDeletedList ? task.getDeletedAt() : task.getUpdatedAt();
-            if (date == null) {
-                date = task.getUpdatedAt();
+        // a profiled call runs locally, otherwise its phases would be spent in the daemon
+        try {
+            if (!Metrics.isEnabled() && DaemonClient.forward(args, System.out)) {
+                return;
             }
+        } catch (IOException e) {
+            System.err.println("[WARN] Daemon indisponível, executando localmente: " + e.getMessage());
+        }
 
-            System.out.printf("%-5d | %-12s | %-50s | %-25s%n",
-                    task.getId(),
-                    task.getStatus().getValue(),
-                    description,
-                    date.format(formatter));
+        if (daemonCommand) {
+            System.out.println("[ERROR] Nenhum daemon em execução.");
+            return;
+        }
+        try (TaskCommands commands = new TaskCommands(TaskService::new)) {
+            commands.execute(args, System.out);
         }
     }
 
-    private static void printHelp() {
-        System.out.println("Task Tracker CLI");
-        System.out.println("Uso: task <comando> [opções]");
-        System.out.println();
-        System.out.println("Comandos:");
-        System.out.println("  add <description>    Adiciona uma nova task");
-        System.out.println("  list                 Lista tasks ativas");
-        System.out.println("  done <id>            Marca como DONE");
-        System.out.println("  update <id> <status> Atualiza status(in_progress,done,todo)");
-        System.out.println("  delete <id>          Move para lixeira");
-        System.out.println("  deleted              Lista tasks deletadas");
-        System.out.println("  trash-clear          Esvazia a lixeira");
-        System.out.println("  help                 Mostra ajuda");
+    /** serve [--port n]: runs until the process is stopped. */
+    private static void serve(String[] args) {
+        int port = TaskServer.DEFAULT_PORT;
+        try {
+            if (args.length == 3 && args[1].equals("--port")) {
+                port = Integer.parseInt(args[2]);
+            } else if (args.length != 1) {
+                System.out.println("[ERROR] Uso: task serve [--port n]");
+                return;
+            }
+            TaskServer server = new TaskServer(new TaskService(), port, TaskServer.defaultThreads());
+            server.start();
+            System.out.println("[INFO] API HTTP ouvindo em http://localhost:" + server.getPort());
+        } catch (NumberFormatException e) {
+            System.out.println("[ERROR] Porta inválida: " + args[2]);
+        } catch (IOException e) {
+            System.out.println("[ERROR] Não foi possível iniciar o servidor: " + e.getMessage());
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,146 @@
+package cli;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Map;
+
+import model.Status;
+import model.TaskJsonReader;
+import service.TaskService;
+
+/**
+ * Applies a stream of commands to one loaded {@link TaskService}, one per
+ * line, and persists them together instead of once per command. A line is
+ * either a CLI command ({@code add <description>}, {@code done <id>},
+ * {@code update <id> <status>}, {@code delete <id>}) or an NDJSON record
+ * such as {@code {"op": "update", "id": 3, "status": "done"}}; records
+ * without an "op" are added as new tasks. Bad lines are reported and skipped.
+ */
+class BatchCommand {
+
+    private final TaskService service;
+    private final PrintStream out;
+    private final int batchSize;
+
+    BatchCommand(TaskService service, PrintStream out, int batchSize) {
+        this.service = service;
+        this.out = out;
+        this.batchSize = batchSize;
+    }
+
+    void run(BufferedReader in) throws IOException {
+        int lineNumber = 0;
+        int applied = 0;
+        int failed = 0;
+        int sinceCommit = 0;
+
+        service.beginBatch();
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                lineNumber++;
+                line = line.strip();
+                if (line.isEmpty() || line.startsWith("#"))
+                    continue;
+
+                try {
+                    if (line.startsWith("{"))
+                        applyRecord(TaskJsonReader.readRecord(line));
+                    else
+                        applyCommand(line);
+                    applied++;
+                } catch (NumberFormatException e) {
+                    failed++;
+                    out.println("[ERROR] Linha " + lineNumber + ": ID inválido. Use um número.");
+                } catch (IllegalArgumentException e) {
+                    failed++;
+                    out.println("[ERROR] Linha " + lineNumber + ": " + e.getMessage());
+                }
+
+                if (batchSize > 0 && ++sinceCommit >= batchSize) {
+                    service.flushBatch();
+                    sinceCommit = 0;
+                }
+            }
+        } finally {
+            service.endBatch();
+        }
+
+        out.println("[INFO] Batch concluído: " + applied + " aplicadas, " + failed + " com erro.");
+    }
+
+    private void applyCommand(String line) {
+        int space = line.indexOf(' ');
+        String command = (space < 0 ? line : line.substring(0, space)).toLowerCase();
+        String rest = space < 0 ? "" : line.substring(space + 1).strip();
+
+        switch (command) {
+            case "add" -> add(unquote(rest));
+            case "done" -> update(rest, Status.DONE);
+            case "update" -> {
+                String[] parts = rest.split("\\s+");
+                if (parts.length != 2)
+                    throw new IllegalArgumentException("Uso: update <id> <status>");
+                update(parts[0], Status.fromValue(parts[1]));
+            }
+            case "delete" -> delete(rest);
+            default -> throw new IllegalArgumentException("Comando não suportado em batch: " + command);
+        }
+    }
+
+    private void applyRecord(Map<String, String> record) {
+        String op = record.getOrDefault("op", "add").toLowerCase();
+        String id = record.get("id");
+
+        switch (op) {
+            case "add" -> {
+                // checked before the task exists, so a bad status adds nothing
+                String status = record.get("status");
+                Status initial = status != null ? Status.fromValue(status) : Status.TODO;
+                int newId = add(record.get("description"));
+                if (initial != Status.TODO)
+                    service.updateStatus(newId, initial);
+            }
+            case "done" -> update(id, Status.DONE);
+            case "update" -> {
+                String status = record.get("status");
+                if (status == null)
+                    throw new IllegalArgumentException("Campo \"status\" ausente.");
+                update(id, Status.fromValue(status));
+            }
+            case "delete" -> delete(id);
+            default -> throw new IllegalArgumentException("Operação desconhecida: " + op);
+        }
+    }
+
+    private int add(String description) {
+        if (description == null || description.isBlank())
+            throw new IllegalArgumentException("Informe uma descrição.");
+        return service.addTask(description).getId();
+    }
+
+    private void update(String id, Status status) {
+        int taskId = parseId(id);
+        if (!service.updateStatus(taskId, status))
+            throw new IllegalArgumentException("Task #" + taskId + " não encontrada.");
+    }
+
+    private void delete(String id) {
+        int taskId = parseId(id);
+        if (!service.delete(taskId))
+            throw new IllegalArgumentException("Task #" + taskId + " não encontrada.");
+    }
+
+    private static int parseId(String id) {
+        if (id == null || id.isEmpty())
+            throw new IllegalArgumentException("Informe um ID.");
+        return Integer.parseInt(id);
+    }
+
+    private static String unquote(String s) {
+        if (s.length() >= 2 && s.charAt(0) == '"' && s.charAt(s.length() - 1) == '"')
+            return s.substring(1, s.length() - 1);
+        return s;
+    }
+}
@@ -0,0 +1,215 @@
+package cli;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.time.LocalDate;
+import java.util.Iterator;
+
+import model.Task;
+
+/**
+ * Renders task tables without a format string per row: columns are padded
+ * by hand into one reusable buffer, the date part of timestamps is cached
+ * per day, and the buffer goes out in large chunks. For {@code System.out}
+ * the chunks are encoded and written straight to the stdout channel,
+ * bypassing the line-flushing PrintStream.
+ *
+ * The plain mode writes tab-separated columns with a header row and the
+ * full description, for piping into other tools.
+ */
+class TableRenderer {
+
+    static final String RULE =
+            "------+--------------+----------------------------------------------------+--------------------------";
+
+    private static final int CHUNK_CHARS = 64 * 1024;
+    private static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000L;
+    private static final String NEWLINE = System.lineSeparator();
+
+    private final boolean isDeletedList;
+    private final boolean plain;
+
+    private final StringBuilder buffer = new StringBuilder(CHUNK_CHARS + 1024);
+
+    // "yyyy-MM-dd " of the day last formatted
+    private long cachedDay = Long.MIN_VALUE;
+    private String cachedDate;
+
+    TableRenderer(boolean isDeletedList, boolean plain) {
+        this.isDeletedList = isDeletedList;
+        this.plain = plain;
+    }
+
+    String header() {
+        if (plain)
+            return "id\tstatus\tdescription\t" + (isDeletedList ? "deletedAt" : "updatedAt");
+        return String.format("%-5s | %-12s | %-50s | %-25s", "ID", "Status", "Description",
+                isDeletedList ? "Deleted At" : "Last Updated");
+    }
+
+    /** One row, as it appears in the table. */
+    String row(Task task) {
+        StringBuilder sb = new StringBuilder(112);
+        appendRow(sb, task);
+        return sb.toString();
+    }
+
+    /** Writes the whole table, or only the rows and their header line in plain mode. */
+    void render(Iterator<Task> tasks, PrintStream out) {
+        if (!tasks.hasNext()) {
+            if (!plain)
+                out.println("Nenhuma tarefa encontrada.");
+            else
+                out.println(header());
+            return;
+        }
+
+        Sink sink = out == System.out ? new ChannelSink() : new StreamSink(out);
+        buffer.setLength(0);
+        buffer.append(header()).append(NEWLINE);
+        if (!plain)
+            buffer.append(RULE).append(NEWLINE);
+        while (tasks.hasNext()) {
+            appendRow(buffer, tasks.next());
+            buffer.append(NEWLINE);
+            if (buffer.length() >= CHUNK_CHARS) {
+                // the reader went away (as with | head): nothing more to render
+                if (!sink.write(buffer))
+                    return;
+                buffer.setLength(0);
+            }
+        }
+        sink.write(buffer);
+        buffer.setLength(0);
+    }
+
+    private void appendRow(StringBuilder sb, Task task) {
+        long millis = isDeletedList && task.isDeleted() ? task.getDeletedAtMillis() : task.getUpdatedAtMillis();
+        String description = task.getDescription();
+
+        if (plain) {
+            sb.append(task.getId()).append('\t').append(task.getStatus().getValue()).append('\t');
+            for (int i = 0; i < description.length(); i++) {
+                char c = description.charAt(i);
+                sb.append(c == '\t' || c == '\n' || c == '\r' ? ' ' : c);
+            }
+            appendDateTime(sb.append('\t'), millis);
+            return;
+        }
+
+        int start = sb.length();
+        sb.append(task.getId());
+        pad(sb, start + 5).append(" | ");
+        start = sb.length();
+        sb.append(task.getStatus().getValue());
+        pad(sb, start + 12).append(" | ");
+        start = sb.length();
+        if (description.length() > 48)
+            sb.append(description, 0, 45).append("...");
+        else
+            sb.append(description);
+        pad(sb, start + 50).append(" | ");
+        start = sb.length();
+        appendDateTime(sb, millis);
+        pad(sb, start + 25);
+    }
+
+    /** Appends spaces until {@code sb} is {@code length} long. */
+    private static StringBuilder pad(StringBuilder sb, int length) {
+        while (sb.length() < length)
+            sb.append(' ');
+        return sb;
+    }
+
+    /** yyyy-MM-dd HH:mm:ss, as stored (the task's local time kept on a UTC scale). */
+    private void appendDateTime(StringBuilder sb, long epochMillis) {
+        long day = Math.floorDiv(epochMillis, MILLIS_PER_DAY);
+        if (day != cachedDay) {
+            cachedDate = LocalDate.ofEpochDay(day) + " ";
+            cachedDay = day;
+        }
+        int secondOfDay = (int) (Math.floorMod(epochMillis, MILLIS_PER_DAY) / 1000);
+        sb.append(cachedDate);
+        twoDigits(sb, secondOfDay / 3600).append(':');
+        twoDigits(sb, secondOfDay / 60 % 60).append(':');
+        twoDigits(sb, secondOfDay % 60);
+    }
+
+    private static StringBuilder twoDigits(StringBuilder sb, int value) {
+        return sb.append((char) ('0' + value / 10)).append((char) ('0' + value % 10));
+    }
+
+    private interface Sink {
+        /** False once the output is gone; like PrintStream, the error itself is not reported. */
+        boolean write(CharSequence chars);
+    }
+
+    /** Any other stream (such as the daemon's reply buffer) takes the chunk as text. */
+    private static final class StreamSink implements Sink {
+        private final PrintStream out;
+
+        StreamSink(PrintStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public boolean write(CharSequence chars) {
+            out.append(chars);
+            out.flush();
+            return !out.checkError();
+        }
+    }
+
+    /** Encodes into one reused byte buffer and writes it to file descriptor 1, in stdout's charset. */
+    private static final class ChannelSink implements Sink {
+        // not closed: closing it would close stdout
+        private final WritableByteChannel channel = new FileOutputStream(FileDescriptor.out).getChannel();
+        private final CharsetEncoder encoder = stdoutCharset().newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private final ByteBuffer bytes = ByteBuffer.allocate(CHUNK_CHARS * 2);
+
+        ChannelSink() {
+            // whatever was printed before the table goes out first
+            System.out.flush();
+        }
+
+        @Override
+        public boolean write(CharSequence chars) {
+            CharBuffer in = CharBuffer.wrap(chars);
+            try {
+                CoderResult result;
+                do {
+                    result = encoder.encode(in, bytes, true);
+                    bytes.flip();
+                    while (bytes.hasRemaining())
+                        channel.write(bytes);
+                    bytes.clear();
+                } while (result.isOverflow());
+                encoder.reset();
+                return true;
+            } catch (IOException e) {
+                return false;
+            }
+        }
+
+        /** The charset System.out encodes with (JDK 17 has no PrintStream.charset()). */
+        private static Charset stdoutCharset() {
+            String name = System.getProperty("stdout.encoding", System.getProperty("sun.stdout.encoding"));
+            try {
+                return name != null ? Charset.forName(name) : Charset.defaultCharset();
+            } catch (IllegalArgumentException e) {
+                return Charset.defaultCharset();
+            }
+        }
+    }
+}
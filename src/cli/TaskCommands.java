@@ -0,0 +1,304 @@
+package cli;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import metrics.Metrics;
+import service.TaskQuery;
+import service.TaskStats;
+import service.TaskService;
+import model.Status;
+import model.Task;
+
+public class TaskCommands implements AutoCloseable {
+    private final Supplier<TaskService> serviceFactory;
+    private TaskService taskService;
+
+    public TaskCommands(TaskService taskService) {
+        this(() -> taskService);
+    }
+
+    /** The service is only built, and the task files only read, once a command needs them. */
+    public TaskCommands(Supplier<TaskService> serviceFactory) {
+        this.serviceFactory = serviceFactory;
+    }
+
+    private TaskService service() {
+        if (taskService == null) {
+            taskService = serviceFactory.get();
+        }
+        return taskService;
+    }
+
+    /** Closes the service if a command built it, saving what it keeps for the next process. */
+    @Override
+    public void close() {
+        if (taskService != null)
+            taskService.close();
+    }
+
+    public void execute(String[] args, PrintStream out) {
+        execute(args, InputStream.nullInputStream(), out);
+    }
+
+    /** {@code in} is only read by commands that take input, such as {@code batch}. */
+    public void execute(String[] args, InputStream in, PrintStream out) {
+        if (args.length == 0) {
+            printHelp(out);
+            return;
+        }
+
+        String command = args[0].toLowerCase();
+        // tab-separated output without the table decoration, for list, search and deleted
+        boolean plain = false;
+        if (command.equals("list") || command.equals("search") || command.equals("deleted")) {
+            plain = Arrays.asList(args).contains("--plain");
+            args = Arrays.stream(args).filter(arg -> !arg.equals("--plain")).toArray(String[]::new);
+        }
+
+        try {
+            switch (command) {
+                case "add":
+                    if (args.length > 1) {
+                        String description = Arrays.stream(args).skip(1).collect(Collectors.joining(" "));
+                        service().addTask(description);
+                        out.println("[INFO] Task criada: \"" + description + "\"");
+                    } else {
+                        out.println("[ERROR] Informe uma descrição.");
+                        out.println("Uso: task add <description>");
+                    }
+                    break;
+
+                case "list":
+                    TaskQuery query = parseListOptions(args);
+                    if (!plain)
+                        out.println("--- Active Tasks ---");
+                    // copied under the read lock: the daemon runs commands from several clients at once
+                    List<Task> page = new ArrayList<>();
+                    service().list(query, page::add);
+                    printTaskTable(out, page.iterator(), false, plain);
+                    break;
+
+                case "watch":
+                    TaskQuery watched = parseListOptions(args);
+                    try {
+                        new WatchCommand(service(), watched, out,
+                                out == System.out && System.console() != null && !"dumb".equals(System.getenv("TERM")))
+                                .run();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    break;
+
+                case "search":
+                    if (args.length > 1) {
+                        String terms = Arrays.stream(args).skip(1).collect(Collectors.joining(" "));
+                        if (!plain)
+                            out.println("--- Search Results ---");
+                        printTaskTable(out, service().search(terms).iterator(), false, plain);
+                    } else {
+                        out.println("[ERROR] Informe os termos da busca.");
+                        out.println("Uso: task search <termos> [OR <termos>] (use termo* para prefixo)");
+                    }
+                    break;
+
+                case "done":
+                    if (args.length > 1) {
+                        int id = Integer.parseInt(args[1]);
+                        if (service().updateStatus(id, Status.DONE)) {
+                            out.println("[INFO] Task #" + id + " marcada como DONE.");
+                        } else {
+                            out.println("[ERROR] Task #" + id + " não encontrada.");
+                        }
+                    } else {
+                        out.println("[ERROR] Informe um ID.");
+                        out.println("Uso: task done <id>");
+                    }
+                    break;
+
+                case "update":
+                    if (args.length > 2) {
+                        int id = Integer.parseInt(args[1]);
+                        Status status = Status.fromValue(args[2]);
+
+                        if (service().updateStatus(id, status)) {
+                            out.println("[INFO] Task #" + id + " atualizada para " + status.getValue());
+                        } else {
+                            out.println("[ERROR] Task #" + id + " não encontrada.");
+                        }
+                    } else {
+                        out.println("[ERROR] Informe ID e status.");
+                        out.println("Uso: task update <id> <todo|in_progress|done>");
+                    }
+                    break;
+
+                case "delete":
+                    if (args.length > 1) {
+                        int id = Integer.parseInt(args[1]);
+
+                        if (service().delete(id)) {
+                            out.println("[INFO] Task #" + id + " movida para lixeira.");
+                        } else {
+                            out.println("[ERROR] Task #" + id + " não encontrada.");
+                        }
+                    } else {
+                        out.println("[ERROR] Informe um ID.");
+                        out.println("Uso: task delete <id>");
+                    }
+                    break;
+
+                case "deleted":
+                    if (!plain)
+                        out.println("--- Deleted Tasks ---");
+                    printTaskTable(out, service().getDeleted().iterator(), true, plain);
+                    break;
+
+                case "stats":
+                    // a one-shot process answers from the saved counters when they are current
+                    TaskStats stats = (taskService == null ? TaskService.readSavedStats() : Optional.<TaskStats>empty())
+                            .orElseGet(() -> service().getStats());
+                    printStats(out, stats);
+                    break;
+
+                case "trash-clear":
+                    service().emptyTrash();
+                    out.println("[INFO] Lixeira esvaziada com sucesso.");
+                    break;
+
+                case "batch":
+                    int batchSize = 0;
+                    if (args.length > 2 && args[1].equals("--size")) {
+                        batchSize = Integer.parseInt(args[2]);
+                    } else if (args.length > 1) {
+                        out.println("[ERROR] Opção inválida: " + args[1]);
+                        out.println("Uso: task batch [--size <n>] < comandos.txt");
+                        break;
+                    }
+                    try {
+                        new BatchCommand(service(), out, batchSize).run(
+                                new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    break;
+
+                case "export":
+                case "import":
+                    TransferCommand.Format format = TransferCommand.Format.NDJSON;
+                    boolean replace = false;
+                    for (int i = 1; i < args.length; i++) {
+                        if (args[i].equals("--format") && i + 1 < args.length)
+                            format = TransferCommand.Format.fromValue(args[++i]);
+                        else if (args[i].equals("--replace") && command.equals("import"))
+                            replace = true;
+                        else
+                            throw new IllegalArgumentException("Opção inválida: " + args[i]);
+                    }
+                    try {
+                        TransferCommand transfer = new TransferCommand(format, out);
+                        if (command.equals("export"))
+                            transfer.export();
+                        else
+                            transfer.importFrom(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)),
+                                    replace);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    break;
+
+                case "help":
+                default:
+                    printHelp(out);
+                    break;
+            }
+        } catch (NumberFormatException e) {
+            out.println("[ERROR] ID inválido. Use um número.");
+        } catch (IllegalArgumentException e) {
+            out.println("[ERROR] " + e.getMessage());
+        }
+    }
+
+    /** list [--status s] [--since yyyy-MM-dd[THH:mm[:ss]]] [--sort created|updated] [--limit n] [--offset n] */
+    private static TaskQuery parseListOptions(String[] args) {
+        TaskQuery query = new TaskQuery();
+        for (int i = 1; i < args.length; i++) {
+            String option = args[i];
+            if (i + 1 >= args.length)
+                throw new IllegalArgumentException("Valor ausente para " + option);
+            String value = args[++i];
+
+            if (!option.startsWith("--"))
+                throw new IllegalArgumentException("Opção inválida: " + option);
+            query.set(option.substring(2), value);
+        }
+        return query;
+    }
+
+    private void printTaskTable(PrintStream out, Iterator<Task> tasks, boolean isDeletedList, boolean plain) {
+        Metrics.Timer timer = Metrics.time(Metrics.Phase.RENDER);
+        try (timer) {
+            new TableRenderer(isDeletedList, plain).render(tasks, out);
+        }
+    }
+
+    private void printStats(PrintStream out, TaskStats stats) {
+        Metrics.Timer timer = Metrics.time(Metrics.Phase.RENDER);
+        try (timer) {
+            int open = stats.getCount(Status.TODO) + stats.getCount(Status.IN_PROGRESS);
+            out.printf("%-14s %d%n", "Todo:", stats.getCount(Status.TODO));
+            out.printf("%-14s %d%n", "In progress:", stats.getCount(Status.IN_PROGRESS));
+            out.printf("%-14s %d%n", "Done:", stats.getCount(Status.DONE));
+            out.printf("%-14s %d%n", "Lixeira:", stats.getTrash());
+            if (open > 0 && stats.getOldestOpenCreatedAt() != null) {
+                Duration age = Duration.between(stats.getOldestOpenCreatedAt(), LocalDateTime.now());
+                out.printf("%-14s #%d, aberta há %dd %dh (%s)%n", "Mais antiga:", stats.getOldestOpenId(),
+                        age.toDays(), age.toHoursPart(),
+                        stats.getOldestOpenCreatedAt().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")));
+            }
+        }
+    }
+
+    private void printHelp(PrintStream out) {
+        out.println("Task Tracker CLI");
+        out.println("Uso: task <comando> [opções]");
+        out.println();
+        out.println("Comandos:");
+        out.println("  add <description>    Adiciona uma nova task");
+        out.println("  list [opções]        Lista tasks ativas");
+        out.println("      --status <status>  --since <yyyy-MM-dd>  --sort <id|created|updated>");
+        out.println("      --limit <n>  --offset <n>  --plain (colunas separadas por tab; também em search e deleted)");
+        out.println("  watch [opções]       Mantém a lista na tela, redesenhando as tasks alteradas (opções do list)");
+        out.println("  search <termos>      Busca tasks pela descrição (termo*, OR)");
+        out.println("  done <id>            Marca como DONE");
+        out.println("  update <id> <status> Atualiza status(in_progress,done,todo)");
+        out.println("  delete <id>          Move para lixeira");
+        out.println("  deleted              Lista tasks deletadas");
+        out.println("  stats                Contagem por status, lixeira e task aberta mais antiga");
+        out.println("  trash-clear          Esvazia a lixeira");
+        out.println("  batch [--size <n>]   Aplica comandos/NDJSON da entrada padrão em um só commit");
+        out.println("  export [opções]      Escreve todas as tasks, inclusive a lixeira, na saída padrão");
+        out.println("  import [opções]      Adiciona as tasks lidas da entrada padrão");
+        out.println("      --format <ndjson|csv>  --replace (import: substitui todas as tasks)");
+        out.println("  daemon [stop]        Mantém as tasks em memória para os próximos comandos");
+        out.println("  serve [--port n]     API HTTP local sobre as tasks (porta 8080)");
+        out.println("  help                 Mostra ajuda");
+        out.println();
+        out.println("Opções globais:");
+        out.println("  --profile            Mostra no stderr o tempo de cada fase e bytes/tasks lidos e gravados");
+    }
+}
\ No newline at end of file
@@ -0,0 +1,156 @@
+package cli;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Supplier;
+
+import model.Task;
+import model.TaskCsv;
+import model.TaskJsonWriter;
+import service.TaskService;
+
+/**
+ * {@code export} and {@code import} of the whole store, trash included, as
+ * NDJSON (one tasks.json object per line) or CSV. Both stream one record at
+ * a time between the store and stdout/stdin, so memory use does not grow
+ * with the store. Bad import records are reported and skipped.
+ */
+class TransferCommand {
+
+    enum Format {
+        NDJSON,
+        CSV;
+
+        static Format fromValue(String value) {
+            for (Format format : values()) {
+                if (format.name().equalsIgnoreCase(value))
+                    return format;
+            }
+            throw new IllegalArgumentException("Formato inválido: " + value + " (use ndjson ou csv)");
+        }
+    }
+
+    private final Format format;
+    private final PrintStream out;
+
+    TransferCommand(Format format, PrintStream out) {
+        this.format = format;
+        this.out = out;
+    }
+
+    void export() throws IOException {
+        // not closed: that would close stdout
+        TaskJsonWriter writer = new TaskJsonWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        if (format == Format.CSV)
+            writer.writeRaw(TaskCsv.HEADER + "\n");
+        try {
+            TaskService.exportAll(task -> {
+                try {
+                    if (format == Format.CSV) {
+                        TaskCsv.writeRow(writer, task);
+                    } else {
+                        writer.writeTask(task);
+                        writer.writeRaw("\n");
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.flush();
+    }
+
+    void importFrom(BufferedReader in, boolean replace) throws IOException {
+        Records records = new Records(in);
+        int imported;
+        try {
+            imported = TaskService.importAll(records, replace);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        out.println("[INFO] Import concluído: " + imported + " importadas, " + records.failed + " com erro.");
+    }
+
+    /** Parses records on demand, skipping (and reporting) the ones that are not valid tasks. */
+    private class Records implements Iterator<Task> {
+        private final BufferedReader in;
+        private Task next;
+        private int number;
+        int failed;
+
+        Records(BufferedReader in) {
+            this.in = in;
+        }
+
+        @Override
+        public boolean hasNext() {
+            try {
+                while (next == null) {
+                    if (format == Format.CSV ? !readCsv() : !readNdjson())
+                        return false;
+                }
+                return true;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public Task next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            Task task = next;
+            next = null;
+            return task;
+        }
+
+        private boolean readNdjson() throws IOException {
+            String line = in.readLine();
+            if (line == null)
+                return false;
+            number++;
+            if (!line.isBlank())
+                parse(() -> Task.fromJson(line));
+            return true;
+        }
+
+        private boolean readCsv() throws IOException {
+            List<String> fields;
+            try {
+                fields = TaskCsv.readRecord(in);
+            } catch (IllegalArgumentException e) {
+                number++;
+                failed++;
+                out.println("[ERROR] Registro " + number + ": " + e.getMessage());
+                return false;
+            }
+            if (fields == null)
+                return false;
+            number++;
+            boolean blank = fields.size() == 1 && fields.get(0).isBlank();
+            boolean header = number == 1 && String.join(",", fields).equals(TaskCsv.HEADER);
+            if (!blank && !header)
+                parse(() -> TaskCsv.fromRecord(fields));
+            return true;
+        }
+
+        private void parse(Supplier<Task> parser) {
+            try {
+                next = parser.get();
+            } catch (RuntimeException e) {
+                failed++;
+                out.println("[ERROR] " + (format == Format.CSV ? "Registro " : "Linha ") + number + ": "
+                        + e.getMessage());
+            }
+        }
+    }
+}
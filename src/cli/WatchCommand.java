@@ -0,0 +1,200 @@
+package cli;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import model.Task;
+import service.TaskQuery;
+import service.TaskService;
+
+/**
+ * Keeps a page of active tasks on screen and updates it as the store
+ * changes. A WatchService on the working directory reports writes to the
+ * store files; a burst of them is debounced into a single reload, which is
+ * diffed against the previous page by ID and update time so only the rows
+ * that changed are redrawn. When the output is not a terminal, each reload
+ * prints the added (+), changed (~) and removed (-) rows instead.
+ */
+class WatchCommand {
+
+    // every commit bumps tasks.version, whatever the storage mode
+    private static final Set<String> STORE_FILES = Set.of("tasks.json", "deleted_tasks.json", "tasks.version");
+
+    private static final long MAX_DELAY_MS = 1000;
+    private static final long MAINTENANCE_MS = 60_000;
+
+    private static final String CLEAR_LINE = "\033[K";
+    private static final int FIRST_ROW = 4;
+    private static final DateTimeFormatter CLOCK = DateTimeFormatter.ofPattern("HH:mm:ss");
+
+    private static final class Row {
+        final Task task;
+        final int id;
+        final LocalDateTime updatedAt;
+
+        Row(Task task) {
+            this.task = task;
+            this.id = task.getId();
+            this.updatedAt = task.getUpdatedAt();
+        }
+
+        boolean sameAs(Row other) {
+            return id == other.id && Objects.equals(updatedAt, other.updatedAt);
+        }
+    }
+
+    private final TaskService service;
+    private final TaskQuery query;
+    private final PrintStream out;
+    private final boolean terminal;
+    private final long debounceMs = Long.getLong("task.watch.debounceMs", 200);
+    private final TableRenderer renderer = new TableRenderer(false, false);
+
+    // the page as last shown
+    private List<Row> rows = List.of();
+    private int statusRow = FIRST_ROW;
+
+    WatchCommand(TaskService service, TaskQuery query, PrintStream out, boolean terminal) {
+        this.service = service;
+        this.query = query;
+        this.out = out;
+        this.terminal = terminal;
+    }
+
+    void run() throws IOException {
+        try (WatchService watcher = FileSystems.getDefault().newWatchService()) {
+            Path.of("").toAbsolutePath().register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+
+            if (terminal) {
+                Runtime.getRuntime().addShutdownHook(new Thread(this::leaveScreen));
+                out.print("\033[H\033[2J--- Active Tasks --- (Ctrl+C para sair)" + CLEAR_LINE + "\n"
+                        + renderer.header() + "\n" + TableRenderer.RULE + "\n");
+            } else {
+                out.println("--- Active Tasks ---");
+                out.println(renderer.header());
+                out.println(TableRenderer.RULE);
+            }
+            update(true);
+
+            while (true) {
+                WatchKey key = watcher.poll(MAINTENANCE_MS, TimeUnit.MILLISECONDS);
+                if (key == null) {
+                    // nothing written for a while, but DONE tasks and old trash still expire
+                    service.runMaintenance();
+                } else if (drain(key)) {
+                    debounce(watcher);
+                    service.refresh();
+                } else {
+                    continue;
+                }
+                update(false);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Waits until the store has been quiet for the debounce interval, or at most MAX_DELAY_MS. */
+    private void debounce(WatchService watcher) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(MAX_DELAY_MS, debounceMs));
+        WatchKey key;
+        while (System.nanoTime() < deadline && (key = watcher.poll(debounceMs, TimeUnit.MILLISECONDS)) != null) {
+            drain(key);
+        }
+    }
+
+    /** Consumes the key's events; true if any of them concerns the store. */
+    private static boolean drain(WatchKey key) {
+        boolean store = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW
+                    || STORE_FILES.contains(((Path) event.context()).getFileName().toString()))
+                store = true;
+        }
+        if (!key.reset())
+            throw new IllegalStateException("O diretório das tasks não pode mais ser observado.");
+        return store;
+    }
+
+    private void update(boolean first) {
+        List<Row> next = new ArrayList<>();
+        service.list(query, task -> next.add(new Row(task)));
+        if (terminal)
+            redraw(next);
+        else
+            printChanges(next, first);
+        rows = next;
+    }
+
+    private void redraw(List<Row> next) {
+        StringBuilder frame = new StringBuilder();
+        int changed = 0;
+        for (int i = 0; i < next.size(); i++) {
+            if (i < rows.size() && rows.get(i).sameAs(next.get(i)))
+                continue;
+            changed++;
+            moveTo(frame, FIRST_ROW + i).append(renderer.row(next.get(i).task)).append(CLEAR_LINE);
+        }
+        if (next.isEmpty() && (!rows.isEmpty() || statusRow == FIRST_ROW))
+            moveTo(frame, FIRST_ROW).append("Nenhuma tarefa encontrada.").append(CLEAR_LINE);
+
+        // the status line follows the table; clearing below it removes rows that dropped off
+        statusRow = FIRST_ROW + Math.max(next.size(), 1);
+        moveTo(frame, statusRow).append("[INFO] ").append(next.size()).append(" tarefas, ").append(changed)
+                .append(" redesenhadas às ").append(LocalTime.now().format(CLOCK)).append("\033[J");
+        out.print(frame);
+        out.flush();
+    }
+
+    private void printChanges(List<Row> next, boolean first) {
+        if (first) {
+            if (next.isEmpty())
+                out.println("Nenhuma tarefa encontrada.");
+            for (Row row : next)
+                out.println(renderer.row(row.task));
+            out.flush();
+            return;
+        }
+
+        Map<Integer, Row> previous = new HashMap<>();
+        for (Row row : rows)
+            previous.put(row.id, row);
+        for (Row row : next) {
+            Row before = previous.remove(row.id);
+            if (before == null)
+                out.println("+ " + renderer.row(row.task));
+            else if (!before.sameAs(row))
+                out.println("~ " + renderer.row(row.task));
+        }
+        for (Row row : previous.values())
+            out.println("- #" + row.id);
+        out.flush();
+    }
+
+    private static StringBuilder moveTo(StringBuilder frame, int row) {
+        return frame.append("\033[").append(row).append(";1H");
+    }
+
+    /** Leaves the cursor below the table when the watch is interrupted. */
+    private void leaveScreen() {
+        out.print("\033[" + (statusRow + 1) + ";1H");
+        out.flush();
+    }
+}
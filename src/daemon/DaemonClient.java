@@ -0,0 +1,82 @@
+package daemon;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.util.Map;
+
+/** Forwards a CLI invocation to a running {@link TaskDaemon}. */
+public final class DaemonClient {
+
+    private DaemonClient() {
+    }
+
+    /**
+     * Sends the command to the daemon and copies its reply to {@code out}.
+     * Returns false, without side effects, when no daemon is listening. The
+     * daemon refuses, with an IOException here, a command from a process
+     * whose store settings differ from its own.
+     */
+    public static boolean forward(String[] args, OutputStream out) throws IOException {
+        SocketChannel channel = connect();
+        if (channel == null)
+            return false;
+
+        try (channel) {
+            DataOutputStream request = new DataOutputStream(Channels.newOutputStream(channel));
+            request.writeInt(args.length);
+            for (String arg : args) {
+                request.writeUTF(arg);
+            }
+            Map<String, String> properties = TaskDaemon.storeProperties();
+            request.writeInt(properties.size());
+            for (Map.Entry<String, String> e : properties.entrySet()) {
+                request.writeUTF(e.getKey());
+                request.writeUTF(e.getValue());
+            }
+            request.flush();
+            channel.shutdownOutput();
+
+            DataInputStream reply = new DataInputStream(Channels.newInputStream(channel));
+            if (reply.readUnsignedByte() == TaskDaemon.REPLY_REFUSED)
+                throw new IOException(reply.readUTF());
+            reply.transferTo(out);
+            out.flush();
+        }
+        return true;
+    }
+
+    static boolean isRunning() {
+        SocketChannel channel = connect();
+        if (channel == null)
+            return false;
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+        return true;
+    }
+
+    private static SocketChannel connect() {
+        if (!Files.exists(TaskDaemon.SOCKET_PATH))
+            return null;
+        try {
+            SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+            try {
+                channel.connect(UnixDomainSocketAddress.of(TaskDaemon.SOCKET_PATH));
+                return channel;
+            } catch (IOException e) {
+                channel.close();
+                return null;
+            }
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
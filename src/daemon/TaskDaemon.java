@@ -0,0 +1,205 @@
+package daemon;
+
+import cli.TaskCommands;
+import service.TaskService;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps a {@link TaskService} loaded and answers CLI commands over a Unix
+ * domain socket next to the task files. Each client is answered on a
+ * worker thread, so a slow one holds up nobody else; the service's locks
+ * keep concurrent commands consistent. A client whose store settings
+ * ({@link #STORE_PROPERTIES}) differ from the daemon's is refused.
+ */
+public class TaskDaemon {
+
+    static final Path SOCKET_PATH = Path.of("task.sock");
+
+    // settings that shape the store and how it is written; the daemon's apply to every command it runs
+    static final List<String> STORE_PROPERTIES = List.of("task.storage", "task.shardSize",
+            "task.journal.compactBytes", "task.parallelParseBytes", "task.snapshotCache", "task.fsync",
+            "task.writeBehindMs", "task.writeBehindChanges");
+
+    // first byte of every reply
+    static final int REPLY_OK = 0;
+    static final int REPLY_REFUSED = 1;
+
+    private static final int WORKERS = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+
+    private final TaskService taskService;
+    private final TaskCommands commands;
+    private final ExecutorService workers;
+    private volatile ServerSocketChannel server;
+
+    public TaskDaemon() {
+        this.taskService = new TaskService();
+        this.commands = new TaskCommands(taskService);
+        this.workers = Executors.newFixedThreadPool(WORKERS, runnable -> {
+            Thread thread = new Thread(runnable, "daemon-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void run() throws IOException {
+        if (Files.exists(SOCKET_PATH)) {
+            if (DaemonClient.isRunning()) {
+                System.out.println("[ERROR] O daemon já está em execução.");
+                return;
+            }
+            Files.delete(SOCKET_PATH); // left behind by a daemon that was killed
+        }
+
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            this.server = server;
+            server.bind(UnixDomainSocketAddress.of(SOCKET_PATH));
+            Runtime.getRuntime().addShutdownHook(new Thread(TaskDaemon::removeSocket));
+            System.out.println("[INFO] Daemon ouvindo em " + SOCKET_PATH.toAbsolutePath());
+
+            while (true) {
+                SocketChannel client;
+                try {
+                    client = server.accept();
+                } catch (ClosedChannelException e) {
+                    break; // closed by daemon stop
+                }
+                workers.execute(() -> serve(client));
+            }
+        } finally {
+            workers.shutdown();
+            try {
+                // commands already running finish and reply
+                workers.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            removeSocket();
+            taskService.close();
+        }
+    }
+
+    private void serve(SocketChannel client) {
+        try (client) {
+            handle(client);
+        } catch (EOFException e) {
+            // probe from DaemonClient.isRunning(), nothing to answer
+        } catch (IOException e) {
+            System.err.println("[ERROR] Falha ao atender cliente: " + e.getMessage());
+        }
+    }
+
+    private void handle(SocketChannel client) throws IOException {
+        DataInputStream in = new DataInputStream(Channels.newInputStream(client));
+        String[] args = readArgs(in);
+        Map<String, String> properties = readProperties(in);
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(buffer, false, StandardCharsets.UTF_8);
+        boolean stop = args.length == 2 && args[0].equalsIgnoreCase("daemon") && args[1].equalsIgnoreCase("stop");
+
+        String mismatch = stop ? null : mismatch(properties);
+        if (mismatch != null) {
+            DataOutputStream reply = new DataOutputStream(Channels.newOutputStream(client));
+            reply.writeByte(REPLY_REFUSED);
+            reply.writeUTF(mismatch);
+            reply.flush();
+            return;
+        }
+
+        if (stop) {
+            out.println("[INFO] Daemon encerrado.");
+        } else {
+            try {
+                // other processes may write to the store while the daemon is up
+                taskService.refresh();
+                // a long-lived process must still expire DONE tasks and old trash on time
+                taskService.runMaintenance();
+                commands.execute(args, out);
+            } catch (RuntimeException e) {
+                out.println("[ERROR] " + e.getMessage());
+            }
+        }
+
+        out.flush();
+        OutputStream reply = Channels.newOutputStream(client);
+        reply.write(REPLY_OK);
+        buffer.writeTo(reply);
+        reply.flush();
+        if (stop)
+            server.close();
+    }
+
+    /** The store settings this process was started with; only those that were set. */
+    static Map<String, String> storeProperties() {
+        Map<String, String> properties = new LinkedHashMap<>();
+        for (String key : STORE_PROPERTIES) {
+            String value = System.getProperty(key);
+            if (value != null)
+                properties.put(key, value);
+        }
+        return properties;
+    }
+
+    /** Describes the first setting the client has otherwise than the daemon, or null if none. */
+    private static String mismatch(Map<String, String> client) {
+        Map<String, String> own = storeProperties();
+        for (String key : STORE_PROPERTIES) {
+            if (!Objects.equals(own.get(key), client.get(key)))
+                return "o daemon usa " + key + "=" + Objects.requireNonNullElse(own.get(key), "(padrão)")
+                        + " e esta chamada " + Objects.requireNonNullElse(client.get(key), "(padrão)");
+        }
+        return null;
+    }
+
+    private static String[] readArgs(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        if (count < 0 || count > 4096)
+            throw new IOException("Requisição inválida");
+        String[] args = new String[count];
+        for (int i = 0; i < count; i++) {
+            args[i] = in.readUTF();
+        }
+        return args;
+    }
+
+    private static Map<String, String> readProperties(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        if (count < 0 || count > STORE_PROPERTIES.size())
+            throw new IOException("Requisição inválida");
+        Map<String, String> properties = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            properties.put(in.readUTF(), in.readUTF());
+        }
+        return properties;
+    }
+
+    private static void removeSocket() {
+        try {
+            Files.deleteIfExists(SOCKET_PATH);
+        } catch (IOException ignored) {
+        }
+    }
+}
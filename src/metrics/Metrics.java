@@ -0,0 +1,146 @@
+package metrics;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Per-process timings and counters for the phases of a {@code task} call.
+ * Off unless {@link #enable()} is called ({@code --profile}, a metrics file
+ * or {@code -Dtask.jfr=true}); while off, {@link #time} hands out a shared
+ * no-op timer and {@link #count} returns after one volatile read.
+ *
+ * While on, every timed phase is also committed as a {@link PhaseEvent} to
+ * any running Flight Recorder recording.
+ */
+public final class Metrics {
+
+    public enum Phase {
+        STARTUP("startup"),
+        LOAD("load"),
+        PARSE("parse"),
+        MAINTENANCE("maintenance"),
+        SAVE("save"),
+        RENDER("render");
+
+        private final String key;
+
+        Phase(String key) {
+            this.key = key;
+        }
+
+        String key() {
+            return key;
+        }
+    }
+
+    public enum Counter {
+        BYTES_READ("bytes_read"),
+        BYTES_WRITTEN("bytes_written"),
+        TASKS_PARSED("tasks_parsed"),
+        TASKS_SERIALIZED("tasks_serialized"),
+        SYNCS("syncs");
+
+        private final String key;
+
+        Counter(String key) {
+            this.key = key;
+        }
+    }
+
+    /**
+     * Ends a phase when closed. Declared before the block and closed by
+     * {@code try (timer)}, since the block itself never refers to it.
+     */
+    public interface Timer extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private static final Timer NOOP = () -> { };
+
+    private static volatile boolean enabled;
+    private static final long started = System.nanoTime();
+
+    private static final AtomicLongArray nanos = new AtomicLongArray(Phase.values().length);
+    private static final AtomicLongArray calls = new AtomicLongArray(Phase.values().length);
+    private static final AtomicLongArray counters = new AtomicLongArray(Counter.values().length);
+
+    private Metrics() {
+    }
+
+    /** Turns collection on and records the JVM startup phase, from process start to now. */
+    public static void enable() {
+        if (enabled)
+            return;
+        enabled = true;
+        ProcessHandle.current().info().startInstant().ifPresent(start -> {
+            long startup = Math.max(0, Instant.now().toEpochMilli() - start.toEpochMilli()) * 1_000_000
+                    - (System.nanoTime() - started);
+            record(Phase.STARTUP, Math.max(0, startup));
+        });
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static Timer time(Phase phase) {
+        // PhaseTimer pulls in jdk.jfr, so it is only loaded once metrics are on
+        return enabled ? new PhaseTimer(phase) : NOOP;
+    }
+
+    public static void count(Counter counter, long amount) {
+        if (enabled)
+            counters.addAndGet(counter.ordinal(), amount);
+    }
+
+    static void record(Phase phase, long elapsed) {
+        nanos.addAndGet(phase.ordinal(), elapsed);
+        calls.incrementAndGet(phase.ordinal());
+    }
+
+    /** From process start, when known, to now. */
+    private static long total() {
+        return nanos.get(Phase.STARTUP.ordinal()) + System.nanoTime() - started;
+    }
+
+    /** Human-readable summary, one line per phase that ran, then the counters. */
+    public static void report(PrintStream out) {
+        out.println("--- Profile ---");
+        for (Phase phase : Phase.values()) {
+            long n = calls.get(phase.ordinal());
+            if (n > 0)
+                out.printf("%-17s %10.2f ms  (%d)%n", phase.key, nanos.get(phase.ordinal()) / 1e6, n);
+        }
+        out.printf("%-17s %10.2f ms%n", "total", total() / 1e6);
+        for (Counter counter : Counter.values()) {
+            out.printf("%-17s %d%n", counter.key, counters.get(counter.ordinal()));
+        }
+    }
+
+    /** Appends one key=value line for this call to {@code path}, for scripts to aggregate. */
+    public static void append(Path path, String command) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("time=").append(Instant.now()).append(" command=").append(command);
+        for (Phase phase : Phase.values()) {
+            sb.append(' ').append(phase.key).append("_us=").append(nanos.get(phase.ordinal()) / 1000);
+        }
+        sb.append(" total_us=").append(total() / 1000);
+        for (Counter counter : Counter.values()) {
+            sb.append(' ').append(counter.key).append('=').append(counters.get(counter.ordinal()));
+        }
+        sb.append('\n');
+
+        try {
+            Files.writeString(path, sb, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            System.err.println("[WARN] Não foi possível gravar " + path + ": " + e.getMessage());
+        }
+    }
+}
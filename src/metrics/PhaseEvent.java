@@ -0,0 +1,18 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** One phase of a task call, so recordings line up load, save and rendering with GC and I/O events. */
+@Name("task.Phase")
+@Label("Task Phase")
+@Category("Task Tracker")
+@Description("Load, parse, maintenance, save or render phase of a task command")
+class PhaseEvent extends Event {
+
+    @Label("Phase")
+    String phase;
+}
@@ -0,0 +1,25 @@
+package metrics;
+
+/** A running phase: timed for {@link Metrics} and, if Flight Recorder is recording, as a {@link PhaseEvent}. */
+final class PhaseTimer implements Metrics.Timer {
+
+    private final Metrics.Phase phase;
+    private final PhaseEvent event = new PhaseEvent();
+    private final long start;
+
+    PhaseTimer(Metrics.Phase phase) {
+        this.phase = phase;
+        event.phase = phase.key();
+        event.begin();
+        start = System.nanoTime();
+    }
+
+    @Override
+    public void close() {
+        long elapsed = System.nanoTime() - start;
+        event.end();
+        if (event.shouldCommit())
+            event.commit();
+        Metrics.record(phase, elapsed);
+    }
+}
@@ -1,19 +1,26 @@
 package model;
 
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
 
 public class Task {
     private int id;
     private String description;
     private Status status;
-    private LocalDateTime createdAt;
-    private LocalDateTime updatedAt;
-    private LocalDateTime deletedAt;
+
+    // UTC-based epoch nanoseconds rather than LocalDateTime, which costs three objects (~72 bytes) per timestamp
+    private long createdAt;
+    private long updatedAt;
+    private long deletedAt;
+
+    private static final long NONE = Long.MIN_VALUE;
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    private static final long NANOS_PER_MILLI = 1_000_000L;
 
     private static final DateTimeFormatter formatter = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
 
@@ -21,9 +28,42 @@ public class Task {
         this.id = id;
         this.description = description;
         this.status = Status.TODO;
-        this.createdAt = LocalDateTime.now();
-        this.updatedAt = LocalDateTime.now();
-        this.deletedAt = null;
+        this.createdAt = toNanos(LocalDateTime.now());
+        this.updatedAt = createdAt;
+        this.deletedAt = NONE;
+    }
+
+    public Task(int id, String description, Status status, LocalDateTime createdAt,
+            LocalDateTime updatedAt, LocalDateTime deletedAt) {
+        this.id = id;
+        this.description = description;
+        this.status = status;
+        this.createdAt = toNanos(createdAt);
+        this.updatedAt = toNanos(updatedAt);
+        this.deletedAt = deletedAt == null ? NONE : toNanos(deletedAt);
+    }
+
+    Task(int id, String description, Status status, long createdAt, long updatedAt, long deletedAt) {
+        this.id = id;
+        this.description = description;
+        this.status = status;
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+        this.deletedAt = deletedAt;
+    }
+
+    private static long toNanos(LocalDateTime time) {
+        try {
+            return Math.addExact(Math.multiplyExact(time.toEpochSecond(ZoneOffset.UTC), NANOS_PER_SECOND),
+                    time.getNano());
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Data fora do intervalo suportado (1678-2262): " + time);
+        }
+    }
+
+    private static LocalDateTime fromNanos(long nanos) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(nanos, NANOS_PER_SECOND),
+                (int) Math.floorMod(nanos, NANOS_PER_SECOND), ZoneOffset.UTC);
     }
 
     public int getId() {
@@ -39,115 +79,89 @@ public class Task {
     }
 
     public LocalDateTime getCreatedAt() {
-        return createdAt;
+        return fromNanos(createdAt);
     }
 
     public LocalDateTime getUpdatedAt() {
-        return updatedAt;
+        return fromNanos(updatedAt);
     }
 
     public LocalDateTime getDeletedAt() {
+        return deletedAt == NONE ? null : fromNanos(deletedAt);
+    }
+
+    /** Same instant as {@link #getCreatedAt()} in UTC-based epoch millis, without building a LocalDateTime. */
+    public long getCreatedAtMillis() {
+        return Math.floorDiv(createdAt, NANOS_PER_MILLI);
+    }
+
+    public long getUpdatedAtMillis() {
+        return Math.floorDiv(updatedAt, NANOS_PER_MILLI);
+    }
+
+    public boolean isDeleted() {
+        return deletedAt != NONE;
+    }
+
+    public long getDeletedAtMillis() {
+        return Math.floorDiv(deletedAt, NANOS_PER_MILLI);
+    }
+
+    long createdAtNanos() {
+        return createdAt;
+    }
+
+    long updatedAtNanos() {
+        return updatedAt;
+    }
+
+    long deletedAtNanos() {
         return deletedAt;
     }
 
+    public void setId(int id) {
+        this.id = id;
+    }
+
     public void setDescription(String description) {
         this.description = description;
-        this.updatedAt = LocalDateTime.now();
+        this.updatedAt = toNanos(LocalDateTime.now());
     }
 
     public void setStatus(Status status) {
         this.status = status;
-        this.updatedAt = LocalDateTime.now();
+        this.updatedAt = toNanos(LocalDateTime.now());
     }
 
     public void setDeletedAt(LocalDateTime deletedAt) {
-        this.deletedAt = deletedAt;
-    }
-
-    private static String escapeJson(String s) {
-        if (s == null)
-            return "";
-        return s.replace("\\", "\\").replace("\"", "\"");
+        this.deletedAt = deletedAt == null ? NONE : toNanos(deletedAt);
     }
 
     public String toJson() {
-        String json = "{"
-                + "\"id\": " + id + ", "
-                + "\"description\": \"" + escapeJson(description.strip()) + "\", "
-                + "\"status\": \"" + status.getValue() + "\", "
-                + "\"createdAt\": \"" + createdAt.format(formatter) + "\", "
-                + "\"updatedAt\": \"" + updatedAt.format(formatter) + "\"";
-
-        if (deletedAt != null) {
-            json += ", \"deletedAt\": \"" + deletedAt.format(formatter) + "\"";
+        StringWriter json = new StringWriter(256);
+        try (TaskJsonWriter writer = new TaskJsonWriter(json, 256)) {
+            writer.writeTask(this);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
-
-        return json + "}";
+        return json.toString();
     }
 
     public static Task fromJson(String json) {
-        // This is a slightly more robust manual parser.
-        // It assumes a simple JSON object structure without nested objects or arrays.
-        Map<String, String> map = new HashMap<>();
-        json = json.trim();
-        if (json.startsWith("{")) {
-            json = json.substring(1);
-        }
-        if (json.endsWith("}")) {
-            json = json.substring(0, json.length() - 1);
-        }
-
-        List<String> parts = new ArrayList<>();
-        int level = 0;
-        int start = 0;
-        for (int i = 0; i < json.length(); i++) {
-            char c = json.charAt(i);
-            if (c == '"') {
-                level = 1 - level; // Simple quote toggle; doesn't handle escaped quotes
-            } else if (c == ',' && level == 0) {
-                parts.add(json.substring(start, i));
-                start = i + 1;
-            }
+        try {
+            return new TaskJsonReader(new StringReader(json), json.length()).readTask();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
-        parts.add(json.substring(start));
-
-        for (String part : parts) {
-            String[] keyValue = part.split(":", 2);
-            if (keyValue.length == 2) {
-                String key = keyValue[0].replace("\"", "").strip();
-                String value = keyValue[1].strip();
-                if (value.startsWith("\"") && value.endsWith("\"")) {
-                    value = value.substring(1, value.length() - 1);
-                }
-                map.put(key, value);
-            }
-        }
-
-        int id = Integer.parseInt(map.get("id"));
-        String description = map.get("description");
-        Status status = Status.fromValue(map.get("status"));
-        LocalDateTime createdAt = LocalDateTime.parse(map.get("createdAt"), formatter);
-        LocalDateTime updatedAt = LocalDateTime.parse(map.get("updatedAt"), formatter);
-
-        Task task = new Task(id, description);
-        task.status = status;
-        task.createdAt = createdAt;
-        task.updatedAt = updatedAt;
-
-        if (map.containsKey("deletedAt")) {
-            task.deletedAt = LocalDateTime.parse(map.get("deletedAt"), formatter);
-        }
-
-        return task;
     }
 
     @Override
     public String toString() {
         String output = "Task #" + id + " [" + status.getValue() + "] " + description
-                + " (created: " + createdAt.format(formatter) + ", updated: " + updatedAt.format(formatter);
+                + " (created: " + getCreatedAt().format(formatter) + ", updated: " + getUpdatedAt().format(formatter);
 
-        if (deletedAt != null) {
-            output += ", deleted: " + deletedAt.format(formatter);
+        if (isDeleted()) {
+            output += ", deleted: " + getDeletedAt().format(formatter);
         }
 
         return output + ")";
@@ -0,0 +1,103 @@
+package model;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tasks as RFC 4180 CSV, one row per task under a fixed header:
+ * {@code id,description,status,createdAt,updatedAt,deletedAt}. Dates are
+ * ISO local date-times as in tasks.json; deletedAt is empty for active
+ * tasks. Fields are quoted only when they need it, and quoted fields may
+ * span lines.
+ */
+public final class TaskCsv {
+
+    public static final String HEADER = "id,description,status,createdAt,updatedAt,deletedAt";
+
+    private TaskCsv() {
+    }
+
+    /** Writes one row through the JSON writer's buffer, with dates formatted exactly as in tasks.json. */
+    public static void writeRow(TaskJsonWriter out, Task task) throws IOException {
+        out.writeInt(task.getId());
+        out.writeRaw(",");
+        writeField(out, task.getDescription().strip());
+        out.writeRaw(",");
+        out.writeRaw(task.getStatus().getValue());
+        out.writeRaw(",");
+        out.writeDateTime(task.createdAtNanos());
+        out.writeRaw(",");
+        out.writeDateTime(task.updatedAtNanos());
+        out.writeRaw(",");
+        if (task.isDeleted())
+            out.writeDateTime(task.deletedAtNanos());
+        out.writeRaw("\n");
+    }
+
+    private static void writeField(TaskJsonWriter out, String value) throws IOException {
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            out.writeRaw(value);
+            return;
+        }
+        out.writeRaw("\"");
+        out.writeRaw(value.replace("\"", "\"\""));
+        out.writeRaw("\"");
+    }
+
+    /** Builds a task from the fields of one row, as returned by {@link #readRecord}. */
+    public static Task fromRecord(List<String> fields) {
+        if (fields.size() != 6)
+            throw new IllegalArgumentException("Esperados 6 campos, encontrados " + fields.size());
+        LocalDateTime createdAt = LocalDateTime.parse(fields.get(3));
+        return new Task(Integer.parseInt(fields.get(0).strip()), fields.get(1), Status.fromValue(fields.get(2)),
+                createdAt, fields.get(4).isEmpty() ? createdAt : LocalDateTime.parse(fields.get(4)),
+                fields.get(5).isEmpty() ? null : LocalDateTime.parse(fields.get(5)));
+    }
+
+    /**
+     * Reads the fields of the next record, or returns null at the end of the
+     * input. {@code in} should be buffered; it is read one character at a time.
+     */
+    public static List<String> readRecord(Reader in) throws IOException {
+        int c = in.read();
+        if (c == -1)
+            return null;
+
+        List<String> fields = new ArrayList<>(6);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        while (true) {
+            if (quoted) {
+                if (c == -1)
+                    throw new IllegalArgumentException("Aspas não fechadas");
+                if (c == '"') {
+                    c = in.read();
+                    if (c != '"') {
+                        quoted = false;
+                        continue;
+                    }
+                }
+                field.append((char) c);
+            } else if (c == '"' && field.length() == 0) {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n' || c == -1) {
+                fields.add(field.toString());
+                return fields;
+            } else if (c != '\r') {
+                field.append((char) c);
+            }
+            c = in.read();
+        }
+    }
+}
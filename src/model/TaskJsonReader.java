@@ -0,0 +1,470 @@
+package model;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Single-pass tokenizer for the task JSON format. Reads straight from a
+ * {@link Reader} through its own buffer and builds {@link Task} objects
+ * field by field, without copying objects out or splitting them into maps.
+ */
+public final class TaskJsonReader implements Closeable {
+
+    private static final char[] ID = "id".toCharArray();
+    private static final char[] DESCRIPTION = "description".toCharArray();
+    private static final char[] STATUS = "status".toCharArray();
+    private static final char[] CREATED_AT = "createdAt".toCharArray();
+    private static final char[] UPDATED_AT = "updatedAt".toCharArray();
+    private static final char[] DELETED_AT = "deletedAt".toCharArray();
+
+    private final Reader in;
+    private final char[] buf;
+    private int pos;
+    private int limit;
+    private long consumed;
+
+    private char[] scratch = new char[128];
+    private int scratchLen;
+
+    private boolean inArray;
+    private boolean finished;
+
+    public TaskJsonReader(Reader in) {
+        this(in, 16 * 1024);
+    }
+
+    /** For single short records, where a full-size buffer would cost more than the parse. */
+    TaskJsonReader(Reader in, int bufferSize) {
+        this.in = in;
+        this.buf = new char[Math.max(16, bufferSize)];
+    }
+
+    /**
+     * A reader for a slice of a larger array that starts at one of its
+     * elements rather than at the opening bracket, as when a file is split
+     * into chunks parsed separately.
+     */
+    public static TaskJsonReader continuing(Reader in) {
+        TaskJsonReader reader = new TaskJsonReader(in);
+        reader.inArray = true;
+        return reader;
+    }
+
+    public static List<Task> readAll(Reader in) throws IOException {
+        List<Task> tasks = new ArrayList<>();
+        try (TaskJsonReader reader = new TaskJsonReader(in)) {
+            Task task;
+            while ((task = reader.next()) != null) {
+                tasks.add(task);
+            }
+        }
+        return tasks;
+    }
+
+    /** Returns the next task of the top-level array, or null once it is exhausted. */
+    public Task next() throws IOException {
+        if (finished)
+            return null;
+
+        int c = skipWhitespace();
+        if (!inArray) {
+            if (c == -1) {
+                finished = true;
+                return null;
+            }
+            expect(c, '[');
+            inArray = true;
+            c = skipWhitespace();
+        } else if (c == ',') {
+            c = skipWhitespace();
+        }
+
+        if (c == ']' || c == -1) {
+            finished = true;
+            return null;
+        }
+        expect(c, '{');
+        return readObjectBody();
+    }
+
+    /** Reads one standalone object, as used by single-record callers like the journal. */
+    public Task readTask() throws IOException {
+        expect(skipWhitespace(), '{');
+        return readObjectBody();
+    }
+
+    /**
+     * Parses one flat object, such as a batch record, and nothing after it.
+     * Scalars are kept as their text and null fields are left out; nested
+     * values are rejected.
+     */
+    public static Map<String, String> readRecord(String json) {
+        TaskJsonReader reader = new TaskJsonReader(new StringReader(json), json.length());
+        try {
+            Map<String, String> record = reader.readFlatObject();
+            if (reader.skipWhitespace() != -1)
+                throw reader.error("fim do objeto esperado");
+            return record;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Map<String, String> readFlatObject() throws IOException {
+        Map<String, String> record = new HashMap<>();
+        expect(skipWhitespace(), '{');
+        int c = skipWhitespace();
+        while (c != '}') {
+            expect(c, '"');
+            readString();
+            String key = new String(scratch, 0, scratchLen);
+            expect(skipWhitespace(), ':');
+            c = skipWhitespace();
+
+            if (c == '"') {
+                readString();
+                record.put(key, new String(scratch, 0, scratchLen));
+            } else if (c == 'n') {
+                readLiteral("null");
+            } else if (c == 't' || c == 'f') {
+                String literal = c == 't' ? "true" : "false";
+                readLiteral(literal);
+                record.put(key, literal);
+            } else if (c == '-' || (c >= '0' && c <= '9')) {
+                scratchLen = 0;
+                while (c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E' || (c >= '0' && c <= '9')) {
+                    appendScratch((char) c);
+                    c = read();
+                }
+                unread();
+                record.put(key, new String(scratch, 0, scratchLen));
+            } else {
+                throw error("valor inesperado");
+            }
+
+            c = skipWhitespace();
+            if (c == ',')
+                c = skipWhitespace();
+            else if (c != '}')
+                throw error("',' ou '}' esperado");
+        }
+        return record;
+    }
+
+    private Task readObjectBody() throws IOException {
+        int id = 0;
+        boolean hasId = false;
+        String description = null;
+        Status status = null;
+        LocalDateTime createdAt = null;
+        LocalDateTime updatedAt = null;
+        LocalDateTime deletedAt = null;
+
+        int c = skipWhitespace();
+        while (c != '}') {
+            expect(c, '"');
+            readString();
+            char[] key = matchKey();
+            expect(skipWhitespace(), ':');
+            c = skipWhitespace();
+
+            if (key == ID) {
+                id = readInt(c);
+                hasId = true;
+            } else if (c == 'n') {
+                readLiteral("null");
+            } else if (key == DESCRIPTION) {
+                expect(c, '"');
+                readString();
+                description = new String(scratch, 0, scratchLen);
+            } else if (key == STATUS) {
+                expect(c, '"');
+                readString();
+                status = matchStatus();
+            } else if (key == CREATED_AT || key == UPDATED_AT || key == DELETED_AT) {
+                expect(c, '"');
+                readString();
+                LocalDateTime value = parseDateTime();
+                if (key == CREATED_AT)
+                    createdAt = value;
+                else if (key == UPDATED_AT)
+                    updatedAt = value;
+                else
+                    deletedAt = value;
+            } else {
+                skipValue(c);
+            }
+
+            c = skipWhitespace();
+            if (c == ',')
+                c = skipWhitespace();
+            else if (c != '}')
+                throw error("',' ou '}' esperado");
+        }
+
+        if (!hasId || description == null || status == null || createdAt == null || updatedAt == null)
+            throw error("campos obrigatorios ausentes");
+
+        return new Task(id, description, status, createdAt, updatedAt, deletedAt);
+    }
+
+    private char[] matchKey() {
+        if (matches(ID))
+            return ID;
+        if (matches(DESCRIPTION))
+            return DESCRIPTION;
+        if (matches(STATUS))
+            return STATUS;
+        if (matches(CREATED_AT))
+            return CREATED_AT;
+        if (matches(UPDATED_AT))
+            return UPDATED_AT;
+        if (matches(DELETED_AT))
+            return DELETED_AT;
+        return null;
+    }
+
+    private boolean matches(char[] key) {
+        if (key.length != scratchLen)
+            return false;
+        for (int i = 0; i < scratchLen; i++) {
+            if (scratch[i] != key[i])
+                return false;
+        }
+        return true;
+    }
+
+    private Status matchStatus() {
+        for (Status s : Status.values()) {
+            String value = s.getValue();
+            if (value.length() != scratchLen)
+                continue;
+            int i = 0;
+            while (i < scratchLen && Character.toLowerCase(scratch[i]) == Character.toLowerCase(value.charAt(i)))
+                i++;
+            if (i == scratchLen)
+                return s;
+        }
+        throw new IllegalArgumentException("Status invalido " + new String(scratch, 0, scratchLen));
+    }
+
+    /** Parses ISO_LOCAL_DATE_TIME ({@code yyyy-MM-ddTHH:mm[:ss[.fraction]]}) out of the scratch buffer. */
+    private LocalDateTime parseDateTime() {
+        if (scratchLen < 16 || scratch[4] != '-' || scratch[7] != '-' || scratch[10] != 'T' || scratch[13] != ':')
+            throw error("data invalida");
+
+        int year = digits(0, 4);
+        int month = digits(5, 2);
+        int day = digits(8, 2);
+        int hour = digits(11, 2);
+        int minute = digits(14, 2);
+        int second = 0;
+        int nano = 0;
+
+        if (scratchLen > 16) {
+            if (scratch[16] != ':' || scratchLen < 19)
+                throw error("data invalida");
+            second = digits(17, 2);
+            if (scratchLen > 19) {
+                if (scratch[19] != '.' || scratchLen > 29)
+                    throw error("data invalida");
+                int fractionDigits = scratchLen - 20;
+                nano = digits(20, fractionDigits);
+                for (int i = fractionDigits; i < 9; i++)
+                    nano *= 10;
+            }
+        }
+        return LocalDateTime.of(year, month, day, hour, minute, second, nano);
+    }
+
+    private int digits(int from, int count) {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            char d = scratch[i];
+            if (d < '0' || d > '9')
+                throw error("data invalida");
+            value = value * 10 + (d - '0');
+        }
+        return value;
+    }
+
+    private int readInt(int c) throws IOException {
+        boolean negative = c == '-';
+        if (negative)
+            c = read();
+        if (c < '0' || c > '9')
+            throw error("numero esperado");
+
+        long value = 0;
+        while (c >= '0' && c <= '9') {
+            value = value * 10 + (c - '0');
+            if (value > Integer.MAX_VALUE + 1L)
+                throw error("numero fora do intervalo");
+            c = read();
+        }
+        unread();
+        value = negative ? -value : value;
+        if (value > Integer.MAX_VALUE)
+            throw error("numero fora do intervalo");
+        return (int) value;
+    }
+
+    /** Reads a string body (after the opening quote) into the scratch buffer, resolving escapes. */
+    private void readString() throws IOException {
+        scratchLen = 0;
+        while (true) {
+            // fast path: copy plain characters straight out of the read buffer
+            int start = pos;
+            while (pos < limit) {
+                char ch = buf[pos];
+                if (ch == '"' || ch == '\\')
+                    break;
+                pos++;
+            }
+            appendScratch(buf, start, pos - start);
+
+            int c = read();
+            if (c == -1)
+                throw error("string nao terminada");
+            if (c == '"')
+                return;
+            if (c == '\\')
+                readEscape();
+            else
+                appendScratch((char) c); // first character after a buffer refill
+        }
+    }
+
+    private void readEscape() throws IOException {
+        int e = read();
+        switch (e) {
+            case '"', '\\', '/' -> appendScratch((char) e);
+            case 'b' -> appendScratch('\b');
+            case 'f' -> appendScratch('\f');
+            case 'n' -> appendScratch('\n');
+            case 'r' -> appendScratch('\r');
+            case 't' -> appendScratch('\t');
+            case 'u' -> {
+                int code = 0;
+                for (int i = 0; i < 4; i++) {
+                    int h = Character.digit(read(), 16);
+                    if (h < 0)
+                        throw error("escape unicode invalido");
+                    code = (code << 4) | h;
+                }
+                appendScratch((char) code);
+            }
+            case -1 -> throw error("string nao terminada");
+            default -> {
+                // stores written before escaping was fixed may hold a lone backslash
+                appendScratch('\\');
+                appendScratch((char) e);
+            }
+        }
+    }
+
+    private void appendScratch(char c) {
+        if (scratchLen == scratch.length)
+            scratch = Arrays.copyOf(scratch, scratch.length * 2);
+        scratch[scratchLen++] = c;
+    }
+
+    private void appendScratch(char[] src, int from, int count) {
+        if (count == 0)
+            return;
+        if (scratchLen + count > scratch.length)
+            scratch = Arrays.copyOf(scratch, Math.max(scratch.length * 2, scratchLen + count));
+        System.arraycopy(src, from, scratch, scratchLen, count);
+        scratchLen += count;
+    }
+
+    private void skipValue(int c) throws IOException {
+        switch (c) {
+            case '"' -> readString();
+            case 't' -> readLiteral("true");
+            case 'f' -> readLiteral("false");
+            case 'n' -> readLiteral("null");
+            case '{', '[' -> skipNested();
+            default -> {
+                if (c != '-' && (c < '0' || c > '9'))
+                    throw error("valor inesperado");
+                while (c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E' || (c >= '0' && c <= '9'))
+                    c = read();
+                unread();
+            }
+        }
+    }
+
+    private void skipNested() throws IOException {
+        int depth = 1;
+        while (depth > 0) {
+            int c = read();
+            if (c == -1)
+                throw error("estrutura nao terminada");
+            if (c == '"')
+                readString();
+            else if (c == '{' || c == '[')
+                depth++;
+            else if (c == '}' || c == ']')
+                depth--;
+        }
+    }
+
+    private void readLiteral(String literal) throws IOException {
+        // first character was already consumed by the caller
+        for (int i = 1; i < literal.length(); i++) {
+            if (read() != literal.charAt(i))
+                throw error("literal invalido");
+        }
+    }
+
+    private int skipWhitespace() throws IOException {
+        int c;
+        do {
+            c = read();
+        } while (c == ' ' || c == '\n' || c == '\r' || c == '\t');
+        return c;
+    }
+
+    private void expect(int c, char expected) {
+        if (c != expected)
+            throw error("'" + expected + "' esperado");
+    }
+
+    private int read() throws IOException {
+        if (pos == limit) {
+            consumed += limit;
+            limit = in.read(buf, 0, buf.length);
+            pos = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buf[pos++];
+    }
+
+    private void unread() {
+        // only ever called right after a read() that returned a character or hit EOF
+        if (limit > 0)
+            pos--;
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException("JSON invalido na posicao " + (consumed + pos) + ": " + message);
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,203 @@
+package model;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Streaming counterpart of {@link TaskJsonReader}. Each task is encoded
+ * into a reusable char buffer and handed to the underlying {@link Writer}
+ * in large blocks, so a whole store is never materialized as one String.
+ * Timestamps are written digit by digit in ISO_LOCAL_DATE_TIME form.
+ */
+public final class TaskJsonWriter implements Closeable, Flushable {
+
+    private final Writer out;
+    private final char[] buf;
+    private int pos;
+
+    public TaskJsonWriter(Writer out) {
+        this(out, 16 * 1024);
+    }
+
+    TaskJsonWriter(Writer out, int bufferSize) {
+        this.out = out;
+        // a timestamp is written in one go and needs up to 29 chars of room
+        this.buf = new char[Math.max(64, bufferSize)];
+    }
+
+    public void writeArray(Iterable<Task> tasks) throws IOException {
+        writeRaw("[\n");
+        boolean first = true;
+        for (Task task : tasks) {
+            if (!first)
+                writeRaw(",\n");
+            writeRaw("  ");
+            writeTask(task);
+            first = false;
+        }
+        writeRaw(first ? "]" : "\n]");
+    }
+
+    public void writeTask(Task task) throws IOException {
+        writeRaw("{\"id\": ");
+        writeInt(task.getId());
+        writeRaw(", \"description\": \"");
+        writeEscaped(task.getDescription().strip());
+        writeRaw("\", \"status\": \"");
+        writeRaw(task.getStatus().getValue());
+        writeRaw("\", \"createdAt\": \"");
+        writeDateTime(task.createdAtNanos());
+        writeRaw("\", \"updatedAt\": \"");
+        writeDateTime(task.updatedAtNanos());
+        if (task.isDeleted()) {
+            writeRaw("\", \"deletedAt\": \"");
+            writeDateTime(task.deletedAtNanos());
+        }
+        writeRaw("\"}");
+    }
+
+    public void writeRaw(String s) throws IOException {
+        int len = s.length();
+        if (len > buf.length) {
+            flushBuffer();
+            out.write(s);
+            return;
+        }
+        ensure(len);
+        s.getChars(0, len, buf, pos);
+        pos += len;
+    }
+
+    public void writeInt(int value) throws IOException {
+        if (value < 0) {
+            if (value == Integer.MIN_VALUE) {
+                writeRaw(Integer.toString(value));
+                return;
+            }
+            put('-');
+            value = -value;
+        }
+        ensure(10);
+        int digits = 1;
+        for (int v = value; v >= 10; v /= 10)
+            digits++;
+        for (int i = pos + digits - 1; i >= pos; i--) {
+            buf[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        pos += digits;
+    }
+
+    /** Writes {@code s} with JSON string escapes, without the surrounding quotes. */
+    public void writeEscaped(String s) throws IOException {
+        for (int i = 0, len = s.length(); i < len; i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"' -> put('\\', '"');
+                case '\\' -> put('\\', '\\');
+                case '\n' -> put('\\', 'n');
+                case '\r' -> put('\\', 'r');
+                case '\t' -> put('\\', 't');
+                default -> {
+                    if (c < 0x20) {
+                        ensure(6);
+                        put('\\', 'u');
+                        put('0', '0');
+                        put(Character.forDigit(c >> 4, 16), Character.forDigit(c & 0xF, 16));
+                    } else {
+                        put(c);
+                    }
+                }
+            }
+        }
+    }
+
+    /** Writes UTC-based epoch nanos as ISO_LOCAL_DATE_TIME, computing the civil date without a LocalDateTime. */
+    void writeDateTime(long epochNanos) throws IOException {
+        long seconds = Math.floorDiv(epochNanos, 1_000_000_000L);
+        int nano = (int) Math.floorMod(epochNanos, 1_000_000_000L);
+        long days = Math.floorDiv(seconds, 86_400L);
+        int secondOfDay = (int) Math.floorMod(seconds, 86_400L);
+
+        // days since 1970-01-01 to year/month/day in the proleptic Gregorian calendar
+        long z = days + 719_468;
+        long era = Math.floorDiv(z, 146_097);
+        int dayOfEra = (int) (z - era * 146_097);
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36_524 - dayOfEra / 146_096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int mp = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * mp + 2) / 5 + 1;
+        int month = mp < 10 ? mp + 3 : mp - 9;
+        int year = (int) (yearOfEra + era * 400) + (month <= 2 ? 1 : 0);
+
+        ensure(29);
+        pad(year, 4);
+        buf[pos++] = '-';
+        pad(month, 2);
+        buf[pos++] = '-';
+        pad(day, 2);
+        buf[pos++] = 'T';
+        pad(secondOfDay / 3600, 2);
+        buf[pos++] = ':';
+        pad(secondOfDay / 60 % 60, 2);
+        buf[pos++] = ':';
+        pad(secondOfDay % 60, 2);
+
+        if (nano != 0) {
+            // same as ISO_LOCAL_DATE_TIME: shortest fraction, trailing zeros dropped
+            int digits = 9;
+            while (nano % 10 == 0) {
+                nano /= 10;
+                digits--;
+            }
+            buf[pos++] = '.';
+            pad(nano, digits);
+        }
+    }
+
+    private void pad(int value, int width) {
+        for (int i = pos + width - 1; i >= pos; i--) {
+            buf[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        pos += width;
+    }
+
+    private void put(char c) throws IOException {
+        if (pos == buf.length)
+            flushBuffer();
+        buf[pos++] = c;
+    }
+
+    private void put(char a, char b) throws IOException {
+        ensure(2);
+        buf[pos++] = a;
+        buf[pos++] = b;
+    }
+
+    private void ensure(int n) throws IOException {
+        if (pos + n > buf.length)
+            flushBuffer();
+    }
+
+    private void flushBuffer() throws IOException {
+        if (pos > 0) {
+            out.write(buf, 0, pos);
+            pos = 0;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        flushBuffer();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flushBuffer();
+        out.close();
+    }
+}
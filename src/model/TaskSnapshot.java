@@ -0,0 +1,141 @@
+package model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary copy of a parsed task list, read through a memory mapping instead
+ * of parsing JSON. The header carries a stamp of the file it was made from,
+ * chosen by the caller, and the snapshot only loads while the stamp matches.
+ *
+ * Layout, big-endian: header (magic, stamp[3], count), then one fixed-width
+ * record per task (id, status, created/updated/deleted nanos, offset and
+ * length of the description), then the UTF-8 descriptions back to back.
+ */
+public final class TaskSnapshot {
+
+    private static final long MAGIC = 0x5441534b534e5031L; // "TASKSNP1"
+    private static final int HEADER_BYTES = 8 + 3 * 8 + 4;
+    private static final int RECORD_BYTES = 4 + 4 + 3 * 8 + 4 + 4;
+    private static final int WRITE_BUFFER_BYTES = 64 * 1024;
+
+    private static final Status[] STATUSES = Status.values();
+
+    private TaskSnapshot() {
+    }
+
+    /** The tasks in the snapshot, or null if it is missing, damaged or was made from another version of the source. */
+    public static List<Task> read(Path path, long[] stamp) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES || size > Integer.MAX_VALUE)
+                return null;
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+            if (buffer.getLong() != MAGIC)
+                return null;
+            for (long expected : stamp) {
+                if (buffer.getLong() != expected)
+                    return null;
+            }
+            int count = buffer.getInt();
+            long textStart = HEADER_BYTES + (long) count * RECORD_BYTES;
+            if (count < 0 || textStart > size)
+                return null;
+
+            byte[] text = new byte[(int) (size - textStart)];
+            buffer.get((int) textStart, text);
+
+            List<Task> tasks = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int id = buffer.getInt();
+                int status = buffer.getInt();
+                long createdAt = buffer.getLong();
+                long updatedAt = buffer.getLong();
+                long deletedAt = buffer.getLong();
+                int offset = buffer.getInt();
+                int length = buffer.getInt();
+                if (status < 0 || status >= STATUSES.length || offset < 0 || length < 0
+                        || offset > text.length - length)
+                    return null;
+                tasks.add(new Task(id, new String(text, offset, length, StandardCharsets.UTF_8),
+                        STATUSES[status], createdAt, updatedAt, deletedAt));
+            }
+            return tasks;
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /** Writes the snapshot through a temp file, so concurrent writers and readers never see half of one. */
+    public static void write(Path path, List<Task> tasks, long[] stamp) throws IOException {
+        byte[][] descriptions = new byte[tasks.size()][];
+        long size = HEADER_BYTES + (long) tasks.size() * RECORD_BYTES;
+        for (int i = 0; i < descriptions.length; i++) {
+            // stripped as in tasks.json, so the cache loads what parsing the JSON would
+            descriptions[i] = tasks.get(i).getDescription().strip().getBytes(StandardCharsets.UTF_8);
+            size += descriptions[i].length;
+        }
+        // read() maps the whole file and records hold int offsets
+        if (size > Integer.MAX_VALUE)
+            throw new IOException("Snapshot grande demais: " + size + " bytes");
+
+        Path tmp = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_BYTES);
+                buffer.putLong(MAGIC);
+                for (long value : stamp)
+                    buffer.putLong(value);
+                buffer.putInt(tasks.size());
+
+                int offset = 0;
+                for (int i = 0; i < descriptions.length; i++) {
+                    if (buffer.remaining() < RECORD_BYTES)
+                        drain(channel, buffer);
+                    Task task = tasks.get(i);
+                    buffer.putInt(task.getId());
+                    buffer.putInt(task.getStatus().ordinal());
+                    buffer.putLong(task.createdAtNanos());
+                    buffer.putLong(task.updatedAtNanos());
+                    buffer.putLong(task.deletedAtNanos());
+                    buffer.putInt(offset);
+                    buffer.putInt(descriptions[i].length);
+                    offset += descriptions[i].length;
+                }
+                for (byte[] description : descriptions) {
+                    if (buffer.remaining() < description.length) {
+                        drain(channel, buffer);
+                        if (description.length > buffer.capacity()) {
+                            drain(channel, ByteBuffer.wrap(description).position(description.length));
+                            continue;
+                        }
+                    }
+                    buffer.put(description);
+                }
+                drain(channel, buffer);
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /** Writes what was put in {@code buffer} and clears it for more. */
+    private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+}
@@ -0,0 +1,163 @@
+package repository;
+
+import model.Task;
+import model.TaskJsonReader;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Parses a large task file on the common {@link ForkJoinPool}. The file is
+ * cut into chunks where a line opens a new element of the top-level array,
+ * which is how TaskJsonWriter lays it out: raw newlines never occur inside
+ * JSON strings, so "},\n  {" can only be an element boundary. Chunks are
+ * read with positional reads, parsed independently and concatenated in file
+ * order. A file that cannot be split that way is left to the caller.
+ */
+final class ChunkedTaskLoader {
+
+    private static final int MIN_CHUNK_BYTES = 1024 * 1024;
+    private static final int WINDOW_BYTES = 64 * 1024;
+
+    private ChunkedTaskLoader() {
+    }
+
+    /** Returns the tasks in file order, or null if the file could not be split or a chunk did not parse. */
+    static List<Task> load(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            int chunks = (int) Math.min(size / MIN_CHUNK_BYTES, ForkJoinPool.getCommonPoolParallelism() * 4L);
+            long[] bounds = split(channel, size, Math.max(chunks, 2));
+            if (bounds.length < 3)
+                return null;
+
+            // one slot per chunk, filled in by the task that parses it
+            List<List<Task>> parts = new ArrayList<>(Collections.nCopies(bounds.length - 1, null));
+            try {
+                ForkJoinPool.commonPool().invoke(new ParseChunks(channel, bounds, parts, 0, parts.size()));
+            } catch (IllegalArgumentException e) {
+                // a boundary that was not a top-level element; the sequential parser reports real errors
+                return null;
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+
+            int total = 0;
+            for (List<Task> part : parts)
+                total += part.size();
+            List<Task> tasks = new ArrayList<>(total);
+            for (List<Task> part : parts)
+                tasks.addAll(part);
+            return tasks;
+        }
+    }
+
+    /** Chunk start offsets plus the file size; each inner offset is the '{' opening an element. */
+    private static long[] split(FileChannel channel, long size, int chunks) throws IOException {
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+        byte[] window = new byte[WINDOW_BYTES];
+
+        for (int k = 1; k < chunks; k++) {
+            long nominal = size * k / chunks;
+            if (nominal <= bounds.get(bounds.size() - 1))
+                continue;
+            int n = readFully(channel, ByteBuffer.wrap(window), nominal);
+            int start = elementStart(window, n);
+            if (start >= 0)
+                bounds.add(nominal + start);
+        }
+
+        bounds.add(size);
+        long[] result = new long[bounds.size()];
+        for (int i = 0; i < result.length; i++)
+            result[i] = bounds.get(i);
+        return result;
+    }
+
+    /** Position of the first '{' in the window that follows ",\n" and indentation, or -1. */
+    private static int elementStart(byte[] window, int length) {
+        for (int i = 1; i < length; i++) {
+            if (window[i] != '\n')
+                continue;
+            int before = window[i - 1] == '\r' && i > 1 ? i - 2 : i - 1;
+            if (window[before] != ',')
+                continue;
+            int j = i + 1;
+            while (j < length && (window[j] == ' ' || window[j] == '\t' || window[j] == '\r'))
+                j++;
+            if (j < length && window[j] == '{')
+                return j;
+        }
+        return -1;
+    }
+
+    private static int readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int total = 0;
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position + total);
+            if (n < 0)
+                break;
+            total += n;
+        }
+        return total;
+    }
+
+    private static final class ParseChunks extends RecursiveAction {
+        // RecursiveAction is Serializable; these tasks never leave the process
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel channel;
+        private final long[] bounds;
+        private final List<List<Task>> parts;
+        private final int from;
+        private final int to;
+
+        ParseChunks(FileChannel channel, long[] bounds, List<List<Task>> parts, int from, int to) {
+            this.channel = channel;
+            this.bounds = bounds;
+            this.parts = parts;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new ParseChunks(channel, bounds, parts, from, mid),
+                        new ParseChunks(channel, bounds, parts, mid, to));
+                return;
+            }
+
+            try {
+                byte[] bytes = new byte[(int) (bounds[from + 1] - bounds[from])];
+                readFully(channel, ByteBuffer.wrap(bytes), bounds[from]);
+                InputStreamReader in = new InputStreamReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8);
+
+                List<Task> tasks = new ArrayList<>();
+                try (TaskJsonReader reader = from == 0 ? new TaskJsonReader(in) : TaskJsonReader.continuing(in)) {
+                    Task task;
+                    while ((task = reader.next()) != null) {
+                        tasks.add(task);
+                    }
+                }
+                parts.set(from, tasks);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
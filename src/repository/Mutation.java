@@ -0,0 +1,57 @@
+package repository;
+
+import model.Task;
+
+public final class Mutation {
+
+    public enum Kind {
+        ADD,
+        PUT,
+        DELETE,
+        PURGE,
+        CLEAR_TRASH
+    }
+
+    private final Kind kind;
+    private final Task task;
+    private final int id;
+
+    private Mutation(Kind kind, Task task, int id) {
+        this.kind = kind;
+        this.task = task;
+        this.id = id;
+    }
+
+    /** A newly created task; its id may be reassigned if another process took it first. */
+    public static Mutation add(Task task) {
+        return new Mutation(Kind.ADD, task, task.getId());
+    }
+
+    public static Mutation put(Task task) {
+        return new Mutation(Kind.PUT, task, task.getId());
+    }
+
+    public static Mutation delete(Task task) {
+        return new Mutation(Kind.DELETE, task, task.getId());
+    }
+
+    public static Mutation purge(int id) {
+        return new Mutation(Kind.PURGE, null, id);
+    }
+
+    public static Mutation clearTrash() {
+        return new Mutation(Kind.CLEAR_TRASH, null, 0);
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public Task getTask() {
+        return task;
+    }
+
+    public int getId() {
+        return task != null ? task.getId() : id;
+    }
+}
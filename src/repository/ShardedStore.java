@@ -0,0 +1,220 @@
+package repository;
+
+import metrics.Metrics;
+import model.Status;
+import model.Task;
+import model.TaskJsonReader;
+import model.TaskJsonWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * Task storage split by id range: shard {@code k} holds every task, active
+ * or in the trash, with an id in {@code [k * shardSize + 1, (k + 1) * shardSize]},
+ * so moving a task to the trash touches a single file. A manifest keeps a
+ * summary of each shard (size, highest id, trash size, oldest DONE update
+ * and oldest deletion), which is enough to pick the next id and to find the
+ * shards due for maintenance without reading them. A checksum of each
+ * shard's contents lets a full save skip the files that did not change.
+ */
+final class ShardedStore {
+
+    static final Path DIRECTORY = Path.of("tasks.d");
+    static final Path MANIFEST = DIRECTORY.resolve("manifest");
+
+    static final class Shard {
+        int count;
+        int maxId;
+        int trash;
+        long oldestDoneUpdatedAt = Long.MAX_VALUE;
+        long oldestDeletedAt = Long.MAX_VALUE;
+        long crc;
+    }
+
+    private final int shardSize;
+    private final TreeMap<Integer, Shard> shards = new TreeMap<>();
+
+    private ShardedStore(int shardSize) {
+        this.shardSize = shardSize;
+    }
+
+    static boolean exists() {
+        return Files.exists(MANIFEST);
+    }
+
+    /** Reads the manifest; a new store uses {@code defaultShardSize}, an existing one keeps its own. */
+    static ShardedStore open(int defaultShardSize) throws IOException {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(MANIFEST);
+        } catch (NoSuchFileException e) {
+            return new ShardedStore(defaultShardSize);
+        }
+
+        ShardedStore store = null;
+        for (String line : lines) {
+            String[] f = line.trim().split("\\s+");
+            if (f[0].equals("shardSize")) {
+                store = new ShardedStore(Integer.parseInt(f[1]));
+            } else if (store != null && f.length == 7) {
+                Shard shard = new Shard();
+                shard.count = Integer.parseInt(f[1]);
+                shard.maxId = Integer.parseInt(f[2]);
+                shard.trash = Integer.parseInt(f[3]);
+                shard.oldestDoneUpdatedAt = Long.parseLong(f[4]);
+                shard.oldestDeletedAt = Long.parseLong(f[5]);
+                shard.crc = Long.parseLong(f[6]);
+                store.shards.put(Integer.parseInt(f[0]), shard);
+            }
+        }
+        if (store == null)
+            throw new IOException("Manifesto inválido: " + MANIFEST);
+        return store;
+    }
+
+    int shardOf(int id) {
+        return Math.floorDiv(id - 1, shardSize);
+    }
+
+    Iterable<Integer> shardIndexes() {
+        return new ArrayList<>(shards.keySet());
+    }
+
+    int lastId() {
+        int max = 0;
+        for (Shard shard : shards.values())
+            max = Math.max(max, shard.maxId);
+        return max;
+    }
+
+    /** Shards holding a DONE task updated before {@code doneBefore} or trash deleted before {@code deletedBefore}. */
+    List<Integer> shardsDueBefore(long doneBefore, long deletedBefore) {
+        List<Integer> due = new ArrayList<>();
+        for (Map.Entry<Integer, Shard> e : shards.entrySet()) {
+            Shard s = e.getValue();
+            if (s.oldestDoneUpdatedAt <= doneBefore || s.oldestDeletedAt <= deletedBefore)
+                due.add(e.getKey());
+        }
+        return due;
+    }
+
+    List<Integer> shardsWithTrash() {
+        List<Integer> result = new ArrayList<>();
+        for (Map.Entry<Integer, Shard> e : shards.entrySet()) {
+            if (e.getValue().trash > 0)
+                result.add(e.getKey());
+        }
+        return result;
+    }
+
+    List<Task> readShard(int index) throws IOException {
+        return readShard(shardPath(index));
+    }
+
+    /** Opens a shard's file, empty if it has none; commits replace shard files rather than rewrite them. */
+    InputStream openShard(int index) throws IOException {
+        try {
+            return Files.newInputStream(shardPath(index));
+        } catch (NoSuchFileException e) {
+            return InputStream.nullInputStream();
+        }
+    }
+
+    /** The shard as {@code commit} will leave it, if it was already written or removed in it. */
+    List<Task> readShard(int index, StoreCommit commit) throws IOException {
+        if (commit.isDeleted(shardPath(index)))
+            return new ArrayList<>();
+        return readShard(commit.current(shardPath(index)));
+    }
+
+    private static List<Task> readShard(Path path) throws IOException {
+        Metrics.Timer timer = Metrics.time(Metrics.Phase.PARSE);
+        try (timer) {
+            List<Task> tasks = TaskJsonReader.readAll(new InputStreamReader(
+                    Files.newInputStream(path), StandardCharsets.UTF_8));
+            if (Metrics.isEnabled()) {
+                Metrics.count(Metrics.Counter.BYTES_READ, Files.size(path));
+                Metrics.count(Metrics.Counter.TASKS_PARSED, tasks.size());
+            }
+            return tasks;
+        } catch (NoSuchFileException e) {
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Stages a replacement of a shard's file in {@code commit} and updates its
+     * summary, unless its contents are unchanged; an empty shard is removed.
+     * Call {@link #writeManifest} afterwards.
+     */
+    void writeShard(int index, List<Task> tasks, StoreCommit commit) throws IOException {
+        Path path = shardPath(index);
+        if (tasks.isEmpty()) {
+            commit.delete(path);
+            shards.remove(index);
+            return;
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (TaskJsonWriter out = new TaskJsonWriter(new OutputStreamWriter(bytes, StandardCharsets.UTF_8))) {
+            out.writeArray(tasks);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        Shard previous = shards.get(index);
+        if (previous != null && previous.crc == crc.getValue() && Files.exists(path))
+            return;
+
+        Files.createDirectories(DIRECTORY);
+        try (OutputStream out = Files.newOutputStream(commit.stage(path))) {
+            bytes.writeTo(out);
+        }
+        Metrics.count(Metrics.Counter.BYTES_WRITTEN, bytes.size());
+        Metrics.count(Metrics.Counter.TASKS_SERIALIZED, tasks.size());
+
+        Shard shard = new Shard();
+        shard.crc = crc.getValue();
+        for (Task task : tasks) {
+            shard.count++;
+            shard.maxId = Math.max(shard.maxId, task.getId());
+            if (task.isDeleted()) {
+                shard.trash++;
+                shard.oldestDeletedAt = Math.min(shard.oldestDeletedAt, task.getDeletedAtMillis());
+            } else if (task.getStatus() == Status.DONE) {
+                shard.oldestDoneUpdatedAt = Math.min(shard.oldestDoneUpdatedAt, task.getUpdatedAtMillis());
+            }
+        }
+        shards.put(index, shard);
+    }
+
+    void writeManifest(StoreCommit commit) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        sb.append("shardSize ").append(shardSize).append('\n');
+        for (Map.Entry<Integer, Shard> e : shards.entrySet()) {
+            Shard s = e.getValue();
+            sb.append(e.getKey()).append(' ').append(s.count).append(' ').append(s.maxId).append(' ')
+                    .append(s.trash).append(' ').append(s.oldestDoneUpdatedAt).append(' ')
+                    .append(s.oldestDeletedAt).append(' ').append(s.crc).append('\n');
+        }
+        Files.createDirectories(DIRECTORY);
+        Files.writeString(commit.stage(MANIFEST), sb);
+    }
+
+    private static Path shardPath(int index) {
+        return DIRECTORY.resolve(String.format("shard-%05d.json", index));
+    }
+}
@@ -0,0 +1,195 @@
+package repository;
+
+import metrics.Metrics;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Changes to several store files that become visible together. New contents
+ * are written to temp files ({@link #stage}), files written in place are
+ * only synced ({@link #sync}), and {@link #apply()} makes them durable with
+ * one sync per file before publishing them: if more than one file is to be
+ * replaced or removed, a commit record listing every rename and removal is
+ * synced and renamed into place first, so a crash part way through is
+ * finished by {@link #recover()} under the writer lock instead of leaving
+ * half of the change on disk.
+ *
+ * Syncing can be turned off with {@code -Dtask.fsync=false}; the renames
+ * still keep a crashed process from leaving a torn store.
+ */
+final class StoreCommit {
+
+    static final Path RECORD = Path.of("tasks.commit");
+
+    private static final boolean FSYNC = !"false".equalsIgnoreCase(System.getProperty("task.fsync"));
+
+    // source -> target, in the order they are renamed
+    private final Map<Path, Path> moves = new LinkedHashMap<>();
+    private final Set<Path> deletions = new LinkedHashSet<>();
+    private final Set<Path> written = new LinkedHashSet<>();
+
+    /**
+     * The temp file that replaces {@code target} once applied. Staging a
+     * target again returns the same file as it was left, so it can be
+     * appended to; a leftover from an earlier attempt is removed first.
+     */
+    Path stage(Path target) throws IOException {
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        if (!moves.containsKey(tmp)) {
+            Files.deleteIfExists(tmp);
+            moves.put(tmp, target);
+        }
+        deletions.remove(target);
+        return tmp;
+    }
+
+    /** The file holding {@code target}'s contents as of this commit: its temp file if staged. */
+    Path current(Path target) {
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        return moves.containsKey(tmp) ? tmp : target;
+    }
+
+    /** Renames an existing file along with the rest of the commit. */
+    void move(Path source, Path target) {
+        moves.put(source, target);
+    }
+
+    /** Removes {@code target} once the rest is in place; a staged replacement of it is dropped. */
+    void delete(Path target) throws IOException {
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        if (moves.remove(tmp) != null)
+            Files.deleteIfExists(tmp);
+        if (Files.exists(target))
+            deletions.add(target);
+    }
+
+    /** True if {@code target} is gone once applied: removed, or renamed away. */
+    boolean isDeleted(Path target) {
+        return deletions.contains(target) || moves.containsKey(target);
+    }
+
+    /** A file appended to in place, to be synced with the rest. */
+    void sync(Path file) {
+        written.add(file);
+    }
+
+    boolean isSynced(Path file) {
+        return written.contains(file);
+    }
+
+    boolean isEmpty() {
+        return moves.isEmpty() && deletions.isEmpty() && written.isEmpty();
+    }
+
+    void apply() throws IOException {
+        for (Path file : written)
+            force(file);
+        for (Path source : moves.keySet())
+            force(source);
+
+        if (moves.size() + deletions.size() <= 1) {
+            // a single rename or removal is atomic by itself
+            publish(moves, deletions, false);
+        } else {
+            StringBuilder sb = new StringBuilder();
+            for (Map.Entry<Path, Path> e : moves.entrySet())
+                sb.append("move\t").append(e.getKey()).append('\t').append(e.getValue()).append('\n');
+            for (Path target : deletions)
+                sb.append("delete\t").append(target).append('\n');
+            Path tmp = RECORD.resolveSibling(RECORD.getFileName() + ".tmp");
+            Files.writeString(tmp, sb);
+            force(tmp);
+            Files.move(tmp, RECORD, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            forceDirectory(directoryOf(RECORD));
+
+            publish(moves, deletions, true);
+            Files.delete(RECORD);
+            forceDirectory(directoryOf(RECORD));
+        }
+        moves.clear();
+        deletions.clear();
+        written.clear();
+    }
+
+    /** Finishes the renames and removals of a commit interrupted by a crash. Writer lock held. */
+    static void recover() throws IOException {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(RECORD);
+        } catch (NoSuchFileException e) {
+            return;
+        }
+        Map<Path, Path> moves = new LinkedHashMap<>();
+        Set<Path> deletions = new LinkedHashSet<>();
+        for (String line : lines) {
+            String[] f = line.split("\t");
+            if (f[0].equals("move") && f.length == 3)
+                moves.put(Path.of(f[1]), Path.of(f[2]));
+            else if (f[0].equals("delete") && f.length == 2)
+                deletions.add(Path.of(f[1]));
+        }
+        System.err.println("[WARN] Concluindo gravação interrompida: " + RECORD);
+        publish(moves, deletions, true);
+        Files.delete(RECORD);
+        forceDirectory(directoryOf(RECORD));
+    }
+
+    /** Renames whatever has not been renamed yet and removes, then syncs the directories involved if asked. */
+    private static void publish(Map<Path, Path> moves, Set<Path> deletions, boolean durable) throws IOException {
+        Set<Path> directories = new LinkedHashSet<>();
+        for (Map.Entry<Path, Path> e : moves.entrySet()) {
+            try {
+                Files.move(e.getKey(), e.getValue(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (NoSuchFileException ex) {
+                // renamed before the crash
+            }
+            directories.add(directoryOf(e.getValue()));
+        }
+        for (Path target : deletions) {
+            Files.deleteIfExists(target);
+            directories.add(directoryOf(target));
+        }
+        if (durable) {
+            for (Path directory : directories)
+                forceDirectory(directory);
+        }
+    }
+
+    private static void force(Path file) throws IOException {
+        if (!FSYNC)
+            return;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Metrics.count(Metrics.Counter.SYNCS, 1);
+    }
+
+    /** Makes renames in {@code directory} durable, where the platform allows it. */
+    private static void forceDirectory(Path directory) {
+        if (!FSYNC)
+            return;
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+            Metrics.count(Metrics.Counter.SYNCS, 1);
+        } catch (IOException e) {
+            // directories cannot be opened for syncing on every platform (Windows)
+        }
+    }
+
+    private static Path directoryOf(Path file) {
+        Path parent = file.toAbsolutePath().getParent();
+        return parent != null ? parent : file.toAbsolutePath();
+    }
+}
@@ -0,0 +1,50 @@
+package repository;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Exclusive writer lock on the store, held across processes through a
+ * {@link FileLock} on a lock file. File locks are per process, so threads of
+ * the same JVM are serialized first by an in-process lock.
+ */
+final class StoreLock implements AutoCloseable {
+
+    private static final ReentrantLock IN_PROCESS = new ReentrantLock();
+
+    private final FileChannel channel;
+    private final FileLock lock;
+
+    private StoreLock(FileChannel channel, FileLock lock) {
+        this.channel = channel;
+        this.lock = lock;
+    }
+
+    static StoreLock acquire(Path path) throws IOException {
+        IN_PROCESS.lock();
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            return new StoreLock(channel, channel.lock());
+        } catch (IOException | RuntimeException e) {
+            if (channel != null)
+                channel.close();
+            IN_PROCESS.unlock();
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            lock.release();
+            channel.close();
+        } finally {
+            IN_PROCESS.unlock();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package repository;
+
+import model.Task;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/** Active and deleted tasks keyed by id, in insertion order, for replaying and merging mutations. */
+class StoreState {
+
+    private final Map<Integer, Task> active = new LinkedHashMap<>();
+    private final Map<Integer, Task> deleted = new LinkedHashMap<>();
+
+    StoreState(Collection<Task> activeTasks, Collection<Task> deletedTasks) {
+        activeTasks.forEach(t -> active.put(t.getId(), t));
+        deletedTasks.forEach(t -> deleted.put(t.getId(), t));
+    }
+
+    /** Applies a record exactly as it was written, as when replaying the journal. */
+    void replay(Mutation m) {
+        Task task = m.getTask();
+        switch (m.getKind()) {
+            case ADD, PUT -> active.put(task.getId(), task);
+            case DELETE -> moveToTrash(task);
+            case PURGE -> deleted.remove(m.getId());
+            case CLEAR_TRASH -> deleted.clear();
+        }
+    }
+
+    /**
+     * Reapplies changes made against an older version of the store on top of
+     * this one. New tasks whose id was taken in the meantime get the next free
+     * id; updates and deletes of tasks that are no longer active are dropped.
+     * Returns the changes that were applied, which are what the journal records.
+     */
+    List<Mutation> merge(List<Mutation> changes) {
+        return merge(changes, 0);
+    }
+
+    /** As {@link #merge(List)}, for a partial state: new ids are never at or below {@code maxIdFloor}. */
+    List<Mutation> merge(List<Mutation> changes, int maxIdFloor) {
+        int maxId = maxIdFloor;
+        for (int id : active.keySet())
+            maxId = Math.max(maxId, id);
+        for (int id : deleted.keySet())
+            maxId = Math.max(maxId, id);
+
+        List<Mutation> applied = new ArrayList<>();
+        for (Mutation m : changes) {
+            Task task = m.getTask();
+            switch (m.getKind()) {
+                case ADD -> {
+                    if (task.getId() <= maxIdFloor || active.containsKey(task.getId())
+                            || deleted.containsKey(task.getId()))
+                        task.setId(maxId + 1);
+                    active.put(task.getId(), task);
+                    maxId = Math.max(maxId, task.getId());
+                }
+                case PUT -> {
+                    if (!active.containsKey(task.getId()))
+                        continue;
+                    active.put(task.getId(), task);
+                }
+                case DELETE -> {
+                    if (!active.containsKey(task.getId()))
+                        continue;
+                    moveToTrash(task);
+                }
+                case PURGE, CLEAR_TRASH -> replay(m);
+            }
+            applied.add(m);
+        }
+        return applied;
+    }
+
+    private void moveToTrash(Task task) {
+        active.remove(task.getId());
+        deleted.remove(task.getId());
+        deleted.put(task.getId(), task);
+    }
+
+    List<Task> activeTasks() {
+        return new ArrayList<>(active.values());
+    }
+
+    List<Task> deletedTasks() {
+        return new ArrayList<>(deleted.values());
+    }
+}
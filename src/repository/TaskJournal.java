@@ -0,0 +1,246 @@
+package repository;
+
+import model.Task;
+import model.TaskJsonWriter;
+
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Append-only log of mutations applied on top of the JSON snapshot.
+ * Each line is one record: {@code add <task>}, {@code put <task>}, {@code del <task>},
+ * {@code purge <id>} or {@code clear}. Records carry the full task state,
+ * so replaying a log twice over the same snapshot is harmless.
+ *
+ * The committed length of the live log is kept with the generation, as the
+ * trash manifest does for its segments: records a crashed commit appended
+ * past it are not replayed, and are cut off before the next append.
+ */
+class TaskJournal {
+
+    private final Path path;
+    private final Path compactingPath;
+
+    TaskJournal(Path path) {
+        this.path = path;
+        this.compactingPath = path.resolveSibling(path.getFileName() + ".compacting");
+    }
+
+    boolean hasEntries() {
+        return Files.exists(path) || Files.exists(compactingPath);
+    }
+
+    long size() {
+        try {
+            return Files.exists(path) ? Files.size(path) : 0;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Appends the records, to the new log if {@link #reset} started one; they
+     * are synced with {@code commit}. {@code committed} is the live log's
+     * committed length, or -1 if not recorded; the log is cut back to it on
+     * the first append of a commit only.
+     */
+    void append(List<Mutation> changes, long committed, StoreCommit commit) throws IOException {
+        if (changes.isEmpty())
+            return;
+        Path file = commit.current(path);
+        // only before the commit's first append: later ones go after the records it already wrote
+        if (file.equals(path) && !commit.isSynced(path)) {
+            endAt(committed);
+            commit.sync(path);
+        }
+
+        try (TaskJsonWriter out = new TaskJsonWriter(new OutputStreamWriter(Files.newOutputStream(file,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE),
+                StandardCharsets.UTF_8))) {
+            for (Mutation m : changes) {
+                switch (m.getKind()) {
+                    case ADD -> {
+                        out.writeRaw("add ");
+                        out.writeTask(m.getTask());
+                    }
+                    case PUT -> {
+                        out.writeRaw("put ");
+                        out.writeTask(m.getTask());
+                    }
+                    case DELETE -> {
+                        out.writeRaw("del ");
+                        out.writeTask(m.getTask());
+                    }
+                    case PURGE -> {
+                        out.writeRaw("purge ");
+                        out.writeInt(m.getId());
+                    }
+                    case CLEAR_TRASH -> out.writeRaw("clear");
+                }
+                out.writeRaw("\n");
+            }
+        }
+    }
+
+    /**
+     * Cuts the live log back to its committed length, and ends a line a crash
+     * left unfinished so the next record does not run into it.
+     */
+    private void endAt(long committed) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.READ)) {
+            if (committed >= 0 && channel.size() > committed)
+                channel.truncate(committed);
+            long size = channel.size();
+            ByteBuffer last = ByteBuffer.allocate(1);
+            if (size > 0 && channel.read(last, size - 1) == 1 && last.get(0) != '\n')
+                channel.write(ByteBuffer.wrap(new byte[] { '\n' }), size);
+        } catch (NoSuchFileException e) {
+            // created by the append
+        }
+    }
+
+    /** Length of the live log once {@code commit} is applied, to be recorded as its committed length. */
+    long committedLength(StoreCommit commit) throws IOException {
+        Path file = commit.current(path);
+        if (commit.isDeleted(path) || !Files.exists(file))
+            return 0;
+        return Files.size(file);
+    }
+
+    /**
+     * Moves the committed part of the live log aside, along with {@code commit},
+     * so a compaction can fold it into the snapshot while new records keep
+     * going to a fresh log. Returns false if a previous compaction has not
+     * finished yet.
+     */
+    boolean rotate(long committed, StoreCommit commit) throws IOException {
+        if (Files.exists(compactingPath) || !Files.exists(path))
+            return false;
+        // the rotated log is replayed whole
+        endAt(committed);
+        commit.move(path, compactingPath);
+        return true;
+    }
+
+    boolean isCompacting() {
+        return Files.exists(compactingPath);
+    }
+
+    void discardRotated(StoreCommit commit) throws IOException {
+        commit.delete(compactingPath);
+    }
+
+    void discardAll(StoreCommit commit) throws IOException {
+        commit.delete(compactingPath);
+        commit.delete(path);
+    }
+
+    /** Starts an empty log that replaces both logs when {@code commit} is applied. */
+    void reset(StoreCommit commit) throws IOException {
+        commit.delete(compactingPath);
+        Files.createFile(commit.stage(path));
+    }
+
+    /**
+     * Replays the rotated log (if any) and then the first {@code committed}
+     * bytes of the live log (all of it if -1) over the given snapshot.
+     */
+    void replayAll(StoreState state, long committed) {
+        replay(compactingPath, -1, state::replay);
+        replay(path, committed, state::replay);
+    }
+
+    /** Replays only the rotated log, as seen by a compaction. */
+    void replayRotated(StoreState state) {
+        replay(compactingPath, -1, state::replay);
+    }
+
+    /** Hands every committed record, rotated log first, to {@code action} without building a state. */
+    void forEach(long committed, Consumer<Mutation> action) {
+        replay(compactingPath, -1, action);
+        replay(path, committed, action);
+    }
+
+    private void replay(Path file, long committed, Consumer<Mutation> action) {
+        if (!Files.exists(file))
+            return;
+        try (InputStream bytes = Files.newInputStream(file);
+                BufferedReader in = new BufferedReader(new InputStreamReader(
+                        committed >= 0 ? limit(bytes, committed) : bytes, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                Mutation m;
+                try {
+                    m = parse(line);
+                } catch (RuntimeException e) {
+                    continue; // a line torn by a crash mid-append, from before committed lengths were kept
+                }
+                if (m != null)
+                    action.accept(m);
+            }
+        } catch (NoSuchFileException e) {
+            // folded away by a compaction between the exists check and the open
+        } catch (IOException e) {
+            System.err.println("Erro ao ler: " + file);
+        }
+    }
+
+    /** The first {@code committed} bytes of the log: what a commit appended past them was never published. */
+    private static InputStream limit(InputStream in, long committed) {
+        return new FilterInputStream(in) {
+            private long left = committed;
+
+            @Override
+            public int read() throws IOException {
+                if (left <= 0)
+                    return -1;
+                int b = super.read();
+                if (b >= 0)
+                    left--;
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (left <= 0)
+                    return -1;
+                int n = super.read(b, off, (int) Math.min(len, left));
+                if (n > 0)
+                    left -= n;
+                return n;
+            }
+
+            @Override
+            public int available() throws IOException {
+                return (int) Math.min(left, super.available());
+            }
+        };
+    }
+
+    private static Mutation parse(String line) {
+        if (line.startsWith("add "))
+            return Mutation.add(Task.fromJson(line.substring(4)));
+        if (line.startsWith("put "))
+            return Mutation.put(Task.fromJson(line.substring(4)));
+        if (line.startsWith("del "))
+            return Mutation.delete(Task.fromJson(line.substring(4)));
+        if (line.startsWith("purge "))
+            return Mutation.purge(Integer.parseInt(line.substring(6).strip()));
+        if (line.equals("clear"))
+            return Mutation.clearTrash();
+        return null;
+    }
+}
@@ -1,80 +1,1227 @@
 package repository;
 
+import metrics.Metrics;
 import model.Task;
+import model.TaskJsonReader;
+import model.TaskJsonWriter;
+import model.TaskSnapshot;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
 
+/**
+ * Reads and writes the task store. Writers from any number of processes are
+ * serialized by a file lock and detect each other through a generation
+ * number in {@code tasks.version}: a commit made against an older generation
+ * re-reads the store and reapplies its changes instead of overwriting it.
+ * Readers never lock; snapshot files are only ever replaced by rename.
+ *
+ * Each write is one {@link StoreCommit}: the files it replaces (the
+ * generation last) are synced once and renamed in together, so a crash
+ * leaves either the old store or the new one.
+ */
 public class TaskRepository {
 
     private final Path ACTIVE_TASKS_PATH = Path.of("tasks.json");
     private final Path DELETED_TASKS_PATH = Path.of("deleted_tasks.json");
+    private final Path JOURNAL_PATH = Path.of("tasks.journal");
+    private final Path VERSION_PATH = Path.of("tasks.version");
+    private final Path LOCK_PATH = Path.of("tasks.lock");
+
+    private static final long DEFAULT_COMPACT_BYTES = 1024 * 1024;
+    private static final long DEFAULT_PARALLEL_PARSE_BYTES = 8 * 1024 * 1024;
+    private static final int DEFAULT_SHARD_SIZE = 10_000;
+    private static final int STAMP_SAMPLE_BYTES = 4096;
+    private static final long UNKNOWN_GENERATION = -1;
+    private static final int IMPORT_CHUNK = 1000;
+
+    private final boolean journaled;
+    private final boolean sharded;
+    private final boolean coldTrash;
+    private final int shardSize;
+    private final long compactThreshold;
+    private final long parallelParseThreshold;
+    private final boolean snapshotCache;
+    private final TaskJournal journal;
+
+    private StoreState replayed;
+    private long loadedGeneration = UNKNOWN_GENERATION;
+    private Thread compactor;
+
+    // a commit written by prepareCommit and not yet synced and published by finishCommit
+    private final ReentrantLock inFlight = new ReentrantLock();
+    private StoreCommit prepared;
+    private StoreLock preparedLock;
+
+    // sharded mode: shards read so far, and whether the single-file store was already checked for migration
+    private final Set<Integer> loadedShards = new HashSet<>();
+    private boolean migrated;
+
+    // json mode: whether deleted_tasks.json was already checked for migration into trash segments
+    private boolean trashMigrated;
+    // trash segments ending by then are dropped by the next commit; Long.MIN_VALUE if none
+    private long trashCutoff = Long.MIN_VALUE;
+
+    // manifests as last read, with what identified the file then; see manifestKey
+    private ShardedStore shardManifest;
+    private Object shardManifestKey;
+    private TrashStore trashManifest;
+    private Object trashManifestKey;
+
+    /** Storage mode from {@code task.storage}: json (default), journal or sharded; anything else is rejected. */
+    public TaskRepository() {
+        this(System.getProperty("task.storage", "json").toLowerCase());
+    }
+
+    public TaskRepository(boolean journaled) {
+        this(journaled ? "journal" : "json");
+    }
+
+    private TaskRepository(String storage) {
+        if (!storage.equals("json") && !storage.equals("journal") && !storage.equals("sharded"))
+            throw new IllegalArgumentException(
+                    "Modo de armazenamento inválido: " + storage + " (use json, journal ou sharded)");
+        this.journaled = storage.equals("journal");
+        this.sharded = storage.equals("sharded");
+        this.coldTrash = !journaled && !sharded;
+        this.shardSize = Integer.getInteger("task.shardSize", DEFAULT_SHARD_SIZE);
+        this.compactThreshold = Long.getLong("task.journal.compactBytes", DEFAULT_COMPACT_BYTES);
+        this.parallelParseThreshold = Long.getLong("task.parallelParseBytes", DEFAULT_PARALLEL_PARSE_BYTES);
+        this.snapshotCache = !"false".equalsIgnoreCase(System.getProperty("task.snapshotCache"));
+        this.journal = new TaskJournal(JOURNAL_PATH);
+    }
 
     public List<Task> loadActiveTasks() {
-        return loadTasksFromFile(ACTIVE_TASKS_PATH);
+        markLoaded();
+        if (!sharded && !journal.hasEntries()) {
+            return loadTasksFromFile(ACTIVE_TASKS_PATH);
+        }
+        return cachedState().activeTasks();
     }
 
     public List<Task> loadDeletedTasks() {
-        return loadTasksFromFile(DELETED_TASKS_PATH);
+        markLoaded();
+        if (coldTrash) {
+            try {
+                migrateTrash();
+                return openTrash().readAll();
+            } catch (IOException e) {
+                System.err.println("Erro ao ler: " + TrashStore.DIRECTORY);
+                return new ArrayList<>();
+            }
+        }
+        if (!sharded && !journal.hasEntries()) {
+            return loadTasksFromFile(DELETED_TASKS_PATH);
+        }
+        return cachedState().deletedTasks();
     }
 
-    public void saveAll(List<Task> active, List<Task> deleted) {
-        saveTasksToFile(active, ACTIVE_TASKS_PATH);
-        saveTasksToFile(deleted, DELETED_TASKS_PATH);
+    /**
+     * True if the trash is kept in compressed day segments (json mode): it
+     * is then only read by {@link #loadDeletedTasks()}, trashed tasks are
+     * appended by {@link #commit} and expire a whole day at a time through
+     * {@link #expireTrashBefore}. {@link #trashSize()} and {@link #trashMaxId()}
+     * stand in for loading it.
+     */
+    public boolean hasColdTrash() {
+        return coldTrash;
     }
 
-    private List<Task> loadTasksFromFile(Path path) {
-        if (!Files.exists(path)) {
+    public int trashSize() {
+        awaitCommit();
+        try {
+            migrateTrash();
+            return openTrash().size();
+        } catch (IOException e) {
+            System.err.println("Erro ao ler: " + TrashStore.DIRECTORY);
+            return 0;
+        }
+    }
+
+    public int trashMaxId() {
+        awaitCommit();
+        try {
+            migrateTrash();
+            return trashManifest().maxId();
+        } catch (IOException e) {
+            System.err.println("Erro ao ler: " + TrashStore.DIRECTORY);
+            return 0;
+        }
+    }
+
+    /** When the oldest trash segment becomes due, given how long trash is kept; Long.MAX_VALUE if none. */
+    public long trashDueAt(long retentionMs) {
+        awaitCommit();
+        try {
+            migrateTrash();
+            return dueAt(openTrash().oldestSegmentEnd(), retentionMs);
+        } catch (IOException e) {
+            System.err.println("Erro ao ler: " + TrashStore.DIRECTORY);
+            return Long.MAX_VALUE;
+        }
+    }
+
+    /** When a task trashed at {@code deletedAtMillis} becomes due for purging, a whole segment at a time. */
+    public static long trashDueAt(long deletedAtMillis, long retentionMs) {
+        return dueAt(TrashStore.segmentEnd(deletedAtMillis), retentionMs);
+    }
+
+    private static long dueAt(long segmentEnd, long retentionMs) {
+        return segmentEnd > Long.MAX_VALUE - retentionMs ? Long.MAX_VALUE : segmentEnd + retentionMs;
+    }
+
+    /**
+     * Has the next commit also drop the trash segments whose whole day is
+     * before {@code cutoff}, so expiry costs no commit of its own; until
+     * then the trash is read without them. Returns how many tasks go with
+     * them.
+     */
+    public int expireTrashBefore(long cutoff) {
+        try {
+            migrateTrash();
+            int expiring = openTrash().sizeEndingBefore(cutoff);
+            trashCutoff = Math.max(trashCutoff, cutoff);
+            return expiring;
+        } catch (IOException e) {
+            System.err.println("Erro ao ler: " + TrashStore.DIRECTORY);
+            return 0;
+        }
+    }
+
+    /** True if {@link #expireTrashBefore} left segments for the next commit to drop. */
+    public boolean hasTrashToExpire() {
+        return trashCutoff != Long.MIN_VALUE;
+    }
+
+    /** The trash as the next commit will leave it, for reading only. */
+    private TrashStore openTrash() throws IOException {
+        return trashManifest().withoutSegmentsEndingBefore(trashCutoff);
+    }
+
+    /** The trash manifest, read again only once a commit has replaced it; commits open their own copy to change. */
+    private TrashStore trashManifest() throws IOException {
+        Object key = manifestKey(TrashStore.MANIFEST);
+        if (key == null || !key.equals(trashManifestKey)) {
+            trashManifest = TrashStore.open();
+            trashManifestKey = key;
+        }
+        return trashManifest;
+    }
+
+    /** Moves deleted_tasks.json, if any, into trash segments the first time the cold trash is used. */
+    private void migrateTrash() throws IOException {
+        if (trashMigrated)
+            return;
+        if (Files.exists(DELETED_TASKS_PATH)) {
+            StoreLock lock = lock();
+            try (lock) {
+                if (Files.exists(DELETED_TASKS_PATH)) {
+                    TrashStore trash = TrashStore.open();
+                    StoreCommit commit = new StoreCommit();
+                    trash.append(loadTasksFromFile(DELETED_TASKS_PATH), commit);
+                    trash.writeManifest(commit);
+                    // in the same commit, so the tasks cannot end up both in the trash and left to migrate
+                    commit.move(DELETED_TASKS_PATH, DELETED_TASKS_PATH.resolveSibling("deleted_tasks.json.migrated"));
+                    commit.apply();
+                    Files.deleteIfExists(cachePath(DELETED_TASKS_PATH));
+                }
+            }
+        }
+        trashMigrated = true;
+    }
+
+    /**
+     * Appends what the changes moved to the trash: the DELETE records, or
+     * after a merge only the tasks the merge actually moved ({@code merged}).
+     */
+    private void appendTrash(List<Mutation> changes, List<Task> merged, StoreCommit commit) throws IOException {
+        TrashStore trash = TrashStore.open();
+        boolean expired = trash.dropSegmentsEndingBefore(trashCutoff, commit) > 0;
+        List<Task> trashed = new ArrayList<>();
+        boolean cleared = false;
+        for (Mutation m : changes) {
+            if (m.getKind() == Mutation.Kind.CLEAR_TRASH) {
+                trash.clear(commit);
+                trashed.clear();
+                cleared = true;
+            } else if (m.getKind() == Mutation.Kind.DELETE) {
+                trashed.add(m.getTask());
+            }
+            // PURGE: the cold trash expires by segment, see expireTrashBefore
+        }
+        List<Task> appended = merged != null ? merged : trashed;
+        if (!cleared && !expired && appended.isEmpty())
+            return;
+        trash.append(appended, commit);
+        trash.writeManifest(commit);
+    }
+
+    /**
+     * True if the store is split into shards that can be loaded one at a
+     * time with {@link #loadShardOf}, {@link #loadShardsDueBefore} and
+     * {@link #loadRemainingShards} instead of all at once.
+     */
+    public boolean isSharded() {
+        return sharded;
+    }
+
+    /** Starts over, as for a fresh load: every shard counts as not loaded. */
+    public void forgetLoadedShards() {
+        loadedShards.clear();
+        replayed = null;
+    }
+
+    /** Highest id in the sharded store, from its manifest. */
+    public int getLastId() {
+        awaitCommit();
+        try {
+            return shardManifest().lastId();
+        } catch (IOException e) {
+            System.err.println("Erro ao ler: " + ShardedStore.DIRECTORY);
+            return 0;
+        }
+    }
+
+    /** Active and trashed tasks of the shard holding {@code id}, or nothing if it was already loaded. */
+    public List<Task> loadShardOf(int id) {
+        markLoaded();
+        try {
+            ShardedStore store = shardManifest();
+            return loadShards(store, List.of(store.shardOf(id)));
+        } catch (IOException e) {
+            System.err.println("Erro ao ler: " + ShardedStore.DIRECTORY);
             return new ArrayList<>();
         }
+    }
+
+    /** Tasks of the shards with a DONE task updated, or a trashed task deleted, before the given epoch millis. */
+    public List<Task> loadShardsDueBefore(long doneUpdatedBefore, long deletedBefore) {
+        markLoaded();
         try {
-            String content = Files.readString(path).strip();
-            if (content.isEmpty() || content.equals("[]")) {
-                return new ArrayList<>();
+            ShardedStore store = shardManifest();
+            return loadShards(store, store.shardsDueBefore(doneUpdatedBefore, deletedBefore));
+        } catch (IOException e) {
+            System.err.println("Erro ao ler: " + ShardedStore.DIRECTORY);
+            return new ArrayList<>();
+        }
+    }
+
+    public List<Task> loadRemainingShards() {
+        markLoaded();
+        try {
+            ShardedStore store = shardManifest();
+            return loadShards(store, store.shardIndexes());
+        } catch (IOException e) {
+            System.err.println("Erro ao ler: " + ShardedStore.DIRECTORY);
+            return new ArrayList<>();
+        }
+    }
+
+    private List<Task> loadShards(ShardedStore store, Iterable<Integer> indexes) throws IOException {
+        List<Task> tasks = new ArrayList<>();
+        for (int index : indexes) {
+            if (loadedShards.add(index))
+                tasks.addAll(store.readShard(index));
+        }
+        return tasks;
+    }
+
+    private ShardedStore openShards() throws IOException {
+        if (!migrated) {
+            migrateToShards();
+        }
+        return ShardedStore.open(shardSize);
+    }
+
+    /** As {@link #openShards}, but read again only once a commit has replaced the manifest; not for commits. */
+    private ShardedStore shardManifest() throws IOException {
+        if (!migrated) {
+            migrateToShards();
+        }
+        Object key = manifestKey(ShardedStore.MANIFEST);
+        if (key == null || !key.equals(shardManifestKey)) {
+            shardManifest = ShardedStore.open(shardSize);
+            shardManifestKey = key;
+        }
+        return shardManifest;
+    }
+
+    /** Tells one version of a manifest from the next without reading it: every write renames a new file in. */
+    private static Object manifestKey(Path path) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            return Arrays.asList(attributes.fileKey(), attributes.size(), attributes.lastModifiedTime());
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /** Moves a single-file (json or journal) store into shards the first time sharded mode sees it. */
+    private void migrateToShards() throws IOException {
+        StoreLock lock = lock();
+        try (lock) {
+            if (!ShardedStore.exists()) {
+                StoreState state = readFileState();
+                ShardedStore store = ShardedStore.open(shardSize);
+                StoreCommit commit = new StoreCommit();
+                writeShards(store, null, state.activeTasks(), state.deletedTasks(), commit);
+                store.writeManifest(commit);
+
+                for (Path old : List.of(ACTIVE_TASKS_PATH, DELETED_TASKS_PATH)) {
+                    if (Files.exists(old))
+                        commit.move(old, old.resolveSibling(old.getFileName() + ".migrated"));
+                }
+                journal.discardAll(commit);
+                apply(commit, Math.max(readGeneration(), 0) + 1);
+            }
+        }
+        migrated = true;
+    }
+
+    /**
+     * Rewrites the given shards (all shards holding any of the tasks if null)
+     * from the tasks that fall in them. Shards left empty are removed.
+     */
+    private void writeShards(ShardedStore store, Set<Integer> dirty, Collection<Task> active,
+            Collection<Task> deleted, StoreCommit commit) throws IOException {
+        Map<Integer, List<Task>> buckets = new TreeMap<>();
+        if (dirty != null) {
+            for (int index : dirty)
+                buckets.put(index, new ArrayList<>());
+        }
+        for (Collection<Task> tasks : List.of(active, deleted)) {
+            for (Task task : tasks) {
+                int index = store.shardOf(task.getId());
+                List<Task> bucket = dirty == null ? buckets.computeIfAbsent(index, i -> new ArrayList<>())
+                        : buckets.get(index);
+                if (bucket != null)
+                    bucket.add(task);
+            }
+        }
+        for (Map.Entry<Integer, List<Task>> e : buckets.entrySet()) {
+            store.writeShard(e.getKey(), e.getValue(), commit);
+        }
+    }
+
+    private static Set<Integer> dirtyShards(ShardedStore store, List<Mutation> changes) {
+        Set<Integer> dirty = new TreeSet<>();
+        for (Mutation m : changes) {
+            if (m.getKind() == Mutation.Kind.CLEAR_TRASH)
+                dirty.addAll(store.shardsWithTrash());
+            else
+                dirty.add(store.shardOf(m.getId()));
+        }
+        return dirty;
+    }
+
+    /** Generation of the store as last loaded or written by this repository, or -1 if unknown. */
+    public long getGeneration() {
+        return loadedGeneration;
+    }
+
+    /** Generation currently on disk, without loading the store; -1 if it cannot be read. */
+    public long currentGeneration() {
+        awaitCommit();
+        return readGeneration();
+    }
+
+    /** True if another process has committed since this repository last loaded or wrote the store. */
+    public boolean isStale() {
+        awaitCommit();
+        if (loadedGeneration == UNKNOWN_GENERATION)
+            return false;
+        long current = readGeneration();
+        if (current == loadedGeneration)
+            return false;
+        replayed = null;
+        loadedShards.clear();
+        loadedGeneration = UNKNOWN_GENERATION;
+        return true;
+    }
+
+    private void markLoaded() {
+        awaitCommit();
+        // read before the data, so a concurrent commit can only make it look older than it is
+        if (loadedGeneration == UNKNOWN_GENERATION) {
+            if (Files.exists(StoreCommit.RECORD)) {
+                // a commit in progress, or one a crash cut short: either way it is finished before reading
+                try {
+                    // taking the lock is enough: lock() recovers
+                    lock().close();
+                } catch (IOException e) {
+                    System.err.println("Erro ao salvar: " + e.getMessage());
+                }
+            }
+            loadedGeneration = readGeneration();
+        }
+    }
+
+    private StoreState cachedState() {
+        if (replayed == null) {
+            replayed = readState();
+        }
+        return replayed;
+    }
+
+    private StoreState readState() {
+        return sharded ? readShardState() : readFileState();
+    }
+
+    /** Every shard, retried if a commit landed while they were being read. */
+    private StoreState readShardState() {
+        for (int attempt = 0; ; attempt++) {
+            long before = readGeneration();
+            List<Task> active = new ArrayList<>();
+            List<Task> deleted = new ArrayList<>();
+            try {
+                ShardedStore store = shardManifest();
+                loadedShards.clear();
+                for (Task task : loadShards(store, store.shardIndexes())) {
+                    (task.isDeleted() ? deleted : active).add(task);
+                }
+            } catch (IOException e) {
+                System.err.println("Erro ao ler: " + ShardedStore.DIRECTORY);
+            }
+            if (attempt == 3 || before == readGeneration()) {
+                return new StoreState(active, deleted);
+            }
+        }
+    }
+
+    /** Snapshot plus journal, retried if a commit was published while they were being read. */
+    private StoreState readFileState() {
+        for (int attempt = 0; ; attempt++) {
+            long[] version = readVersion();
+            List<Object> before = publishedState(version);
+            StoreState state = new StoreState(loadTasksFromFile(ACTIVE_TASKS_PATH),
+                    loadTasksFromFile(DELETED_TASKS_PATH));
+            journal.replayAll(state, version[1]);
+            if (attempt == 3 || before != null && before.equals(publishedState(readVersion()))) {
+                return state;
+            }
+        }
+    }
+
+    /**
+     * What identifies the files a reader sees: both snapshots and the
+     * version, which every journal append and rotation rewrites. Null while
+     * a commit spanning several files, such as a compaction renaming both
+     * snapshots and dropping the rotated log, is halfway published.
+     */
+    private List<Object> publishedState(long[] version) {
+        if (Files.exists(StoreCommit.RECORD))
+            return null;
+        return Arrays.asList(fileKey(ACTIVE_TASKS_PATH), fileKey(DELETED_TASKS_PATH), version[0], version[1]);
+    }
+
+    /**
+     * Persists a set of changes. In journal mode only the changes are appended;
+     * otherwise both files are rewritten from the given lists. Returns true if
+     * another process had committed since this store was loaded, in which case
+     * the changes were merged into its version and the caller should reload.
+     */
+    public boolean commit(Collection<Task> active, Collection<Task> deleted, List<Mutation> changes) {
+        boolean merged = prepareCommit(active, deleted, changes);
+        finishCommit();
+        return merged;
+    }
+
+    /**
+     * The first half of {@link #commit}: writes the changes without syncing
+     * them or making them visible, which {@link #finishCommit()} does. The
+     * lists are no longer read after this returns, so the caller can go on
+     * changing them while the files are synced; the writer lock stays held in
+     * between, and this repository's reads wait for the finish.
+     */
+    public boolean prepareCommit(Collection<Task> active, Collection<Task> deleted, List<Mutation> changes) {
+        replayed = null;
+        boolean merged;
+        try {
+            if (coldTrash)
+                migrateTrash();
+        } catch (IOException e) {
+            System.err.println("Erro ao salvar: " + e.getMessage());
+            return false;
+        }
+        inFlight.lock();
+        StoreLock lock = null;
+        boolean ready = false;
+        Metrics.Timer timer = Metrics.time(Metrics.Phase.SAVE);
+        try (timer) {
+            lock = lock();
+            long[] version = readVersion();
+            long current = version[0];
+            merged = current == UNKNOWN_GENERATION || current != loadedGeneration;
+            StoreCommit commit = new StoreCommit();
+
+            if (sharded) {
+                merged = commitShards(active, deleted, changes, merged, commit);
+            }
+
+            StoreState fresh = null;
+            List<Mutation> applied = changes;
+            if (merged && !sharded) {
+                fresh = readState();
+                // trashed ids are not loaded here, but stay taken
+                applied = fresh.merge(changes, coldTrash ? trashManifest().maxId() : 0);
+            }
+
+            if (sharded) {
+                // written above
+            } else if (coldTrash) {
+                // a commit that only expires trash leaves tasks.json alone
+                if (!changes.isEmpty()) {
+                    writeSnapshot(merged ? fresh.activeTasks() : active, ACTIVE_TASKS_PATH, commit);
+                    journal.discardAll(commit);
+                }
+                appendTrash(changes, merged ? fresh.deletedTasks() : null, commit);
+            } else {
+                // journal mode
+                long before = Metrics.isEnabled() ? journal.size() : 0;
+                // after a merge, only what it applied: a dropped update would revive a deleted task on replay
+                journal.append(applied, version[1], commit);
+                if (Metrics.isEnabled()) {
+                    Metrics.count(Metrics.Counter.BYTES_WRITTEN, journal.size() - before);
+                    Metrics.count(Metrics.Counter.TASKS_SERIALIZED, applied.size());
+                }
             }
 
-            if (content.startsWith("["))
-                content = content.substring(1);
-            if (content.endsWith("]"))
-                content = content.substring(0, content.length() - 1);
-
-            List<Task> tasks = new ArrayList<>();
-            int braceCount = 0, start = 0;
-
-            for (int i = 0; i < content.length(); i++) {
-                char c = content.charAt(i);
-                if (c == '{') {
-                    if (braceCount == 0)
-                        start = i;
-                    braceCount++;
-                } else if (c == '}') {
-                    braceCount--;
-                    if (braceCount == 0) {
-                        tasks.add(Task.fromJson(content.substring(start, i + 1)));
+            long generation = Math.max(current, loadedGeneration) + 1;
+            writeVersion(commit, generation);
+            loadedGeneration = generation;
+            prepared = commit;
+            preparedLock = lock;
+            trashCutoff = Long.MIN_VALUE;
+            ready = true;
+        } catch (IOException e) {
+            System.err.println("Erro ao salvar: " + e.getMessage());
+            return false;
+        } finally {
+            if (!ready)
+                release(lock);
+        }
+        return merged;
+    }
+
+    /**
+     * Syncs and publishes what {@link #prepareCommit} wrote. Returns false if
+     * that failed, or if the prepare did: the generation was not published.
+     */
+    public boolean finishCommit() {
+        if (prepared == null)
+            return false;
+        boolean published = false;
+        Metrics.Timer timer = Metrics.time(Metrics.Phase.SAVE);
+        StoreLock lock = preparedLock;
+        try (timer; lock) {
+            prepared.apply();
+            published = true;
+        } catch (IOException e) {
+            System.err.println("Erro ao salvar: " + e.getMessage());
+            // set by the prepare, but never reached the disk
+            loadedGeneration = UNKNOWN_GENERATION;
+        } finally {
+            prepared = null;
+            preparedLock = null;
+            inFlight.unlock();
+        }
+
+        if (journaled && journal.size() >= compactThreshold) {
+            compactInBackground();
+        }
+        return published;
+    }
+
+    /** Gives up a prepare that failed: the lock, if it was taken, and the in-flight mark. */
+    private void release(StoreLock lock) {
+        try {
+            if (lock != null)
+                lock.close();
+        } catch (IOException e) {
+            System.err.println("Erro ao salvar: " + e.getMessage());
+        } finally {
+            inFlight.unlock();
+        }
+    }
+
+    /** Waits out a commit another thread has prepared: until it finishes, the files are still the old ones. */
+    private void awaitCommit() {
+        inFlight.lock();
+        inFlight.unlock();
+    }
+
+    /**
+     * Rewrites only the shards touched by the changes. If the store moved on
+     * since it was loaded, or a touched shard was never loaded, those shards
+     * (and the ones new ids may spill into) are re-read and the changes
+     * merged into them; returns true in that case.
+     */
+    private boolean commitShards(Collection<Task> active, Collection<Task> deleted, List<Mutation> changes,
+            boolean stale, StoreCommit commit) throws IOException {
+        ShardedStore store = openShards();
+        Set<Integer> dirty = dirtyShards(store, changes);
+
+        if (!stale && loadedShards.containsAll(dirty)) {
+            writeShards(store, dirty, active, deleted, commit);
+            store.writeManifest(commit);
+            return false;
+        }
+
+        int lastId = store.lastId();
+        int adds = 0;
+        for (Mutation m : changes) {
+            if (m.getKind() == Mutation.Kind.ADD)
+                adds++;
+        }
+        Set<Integer> touched = new TreeSet<>(dirty);
+        for (int index = store.shardOf(lastId + 1); adds > 0 && index <= store.shardOf(lastId + adds); index++)
+            touched.add(index);
+
+        List<Task> freshActive = new ArrayList<>();
+        List<Task> freshDeleted = new ArrayList<>();
+        for (int index : touched) {
+            for (Task task : store.readShard(index))
+                (task.isDeleted() ? freshDeleted : freshActive).add(task);
+        }
+        StoreState fresh = new StoreState(freshActive, freshDeleted);
+        fresh.merge(changes, lastId);
+
+        // new tasks may have been given other ids by the merge
+        touched.addAll(dirtyShards(store, changes));
+        writeShards(store, touched, fresh.activeTasks(), fresh.deletedTasks(), commit);
+        store.writeManifest(commit);
+        return true;
+    }
+
+    /** Overwrites the whole store with the given lists, regardless of concurrent changes. */
+    public void saveAll(Collection<Task> active, Collection<Task> deleted) {
+        replayed = null;
+        Metrics.Timer timer = Metrics.time(Metrics.Phase.SAVE);
+        try (timer) {
+            StoreLock lock = lock();
+            try (lock) {
+                StoreCommit commit = new StoreCommit();
+                if (sharded) {
+                    ShardedStore store = openShards();
+                    Set<Integer> all = new TreeSet<>();
+                    store.shardIndexes().forEach(all::add);
+                    for (Collection<Task> tasks : List.of(active, deleted)) {
+                        for (Task task : tasks)
+                            all.add(store.shardOf(task.getId()));
                     }
+                    // unchanged shards are recognised by checksum and not rewritten
+                    writeShards(store, all, active, deleted, commit);
+                    store.writeManifest(commit);
+                } else if (coldTrash) {
+                    migrateTrash();
+                    writeSnapshot(active, ACTIVE_TASKS_PATH, commit);
+                    journal.discardAll(commit);
+                    TrashStore trash = TrashStore.open();
+                    trash.clear(commit);
+                    trash.append(new ArrayList<>(deleted), commit);
+                    trash.writeManifest(commit);
+                } else {
+                    writeAll(active, deleted, commit);
                 }
+                long generation = Math.max(readGeneration(), loadedGeneration) + 1;
+                apply(commit, generation);
+                loadedGeneration = generation;
             }
-            return tasks;
+        } catch (IOException e) {
+            System.err.println("Erro ao salvar: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Streams every task, trash included, to {@code action} without loading
+     * the store: files are read one record at a time and shards one shard at
+     * a time. In journal mode only the journal's records are held, so they
+     * can take the place of the snapshot's. Writers only wait while the files
+     * are opened: commits replace files rather than rewrite them, and append
+     * to the journal and trash segments past the committed lengths read then.
+     */
+    public void exportTasks(Consumer<? super Task> action) throws IOException {
+        if (coldTrash)
+            migrateTrash();
+        if (sharded)
+            openShards();
+        List<InputStream> opened = new ArrayList<>();
+        try {
+            if (sharded) {
+                StoreLock lock = lock();
+                try (lock) {
+                    ShardedStore store = ShardedStore.open(shardSize);
+                    for (int index : store.shardIndexes())
+                        opened.add(store.openShard(index));
+                }
+                for (InputStream shard : opened)
+                    streamTasks(shard, action);
+                return;
+            }
+
+            // latest state of each task the journal touched; null once purged
+            Map<Integer, Task> journaled = new LinkedHashMap<>();
+            boolean[] trashCleared = { false };
+            InputStream active;
+            InputStream deleted = null;
+            List<InputStream> segments = List.of();
+            StoreLock lock = lock();
+            try (lock) {
+                journal.forEach(readVersion()[1], m -> {
+                    switch (m.getKind()) {
+                        case ADD, PUT, DELETE -> journaled.put(m.getId(), m.getTask());
+                        case PURGE -> journaled.put(m.getId(), null);
+                        case CLEAR_TRASH -> {
+                            trashCleared[0] = true;
+                            journaled.replaceAll((id, task) -> task != null && task.isDeleted() ? null : task);
+                        }
+                    }
+                });
+                active = openFile(ACTIVE_TASKS_PATH);
+                opened.add(active);
+                if (coldTrash) {
+                    segments = TrashStore.open().openSegments();
+                    opened.addAll(segments);
+                } else {
+                    deleted = openFile(DELETED_TASKS_PATH);
+                    opened.add(deleted);
+                }
+            }
+
+            streamTasks(active, task -> {
+                if (!journaled.containsKey(task.getId()))
+                    action.accept(task);
+            });
+            Consumer<Task> trashed = task -> {
+                if (!trashCleared[0] && !journaled.containsKey(task.getId()))
+                    action.accept(task);
+            };
+            if (coldTrash) {
+                for (InputStream segment : segments)
+                    TrashStore.readSegment(segment, trashed);
+            } else {
+                streamTasks(deleted, trashed);
+            }
+            for (Task task : journaled.values()) {
+                if (task != null)
+                    action.accept(task);
+            }
+        } finally {
+            for (InputStream in : opened)
+                in.close();
+        }
+    }
+
+    /**
+     * Adds tasks to the store as they are read from {@code tasks}, holding at
+     * most one shard or {@value #IMPORT_CHUNK} tasks at a time. A task keeps
+     * its id if it is above every id in the store and imported before it, and
+     * otherwise gets the next free one; tasks with a deletion date go to the
+     * trash. With {@code replace} the store is emptied first and ids are kept
+     * as given, except where one repeats, which gets the next free id.
+     * Returns how many tasks were imported.
+     */
+    public int importTasks(Iterator<Task> tasks, boolean replace) throws IOException {
+        replayed = null;
+        loadedShards.clear();
+        if (coldTrash)
+            migrateTrash();
+        if (sharded)
+            openShards();
+        int imported;
+        Metrics.Timer timer = Metrics.time(Metrics.Phase.SAVE);
+        try (timer) {
+            StoreLock lock = lock();
+            try (lock) {
+                StoreCommit commit = new StoreCommit();
+                if (sharded)
+                    imported = importShards(tasks, replace, commit);
+                else if (coldTrash)
+                    imported = importSnapshot(tasks, replace, commit);
+                else
+                    imported = importJournal(tasks, replace, commit);
+                loadedGeneration = UNKNOWN_GENERATION;
+                apply(commit, Math.max(readGeneration(), 0) + 1);
+            }
+        }
+        if (journaled && journal.size() >= compactThreshold) {
+            compactInBackground();
+        }
+        return imported;
+    }
 
+    /** json mode: tasks.json is copied through to a new file with the active tasks appended. */
+    private int importSnapshot(Iterator<Task> tasks, boolean replace, StoreCommit commit) throws IOException {
+        TrashStore trash = TrashStore.open();
+        if (replace)
+            trash.clear(commit);
+        int maxId = trash.maxId();
+        BitSet keptIds = replace ? new BitSet() : null;
+        int imported = 0;
+        List<Task> trashed = new ArrayList<>();
+        try (TaskJsonWriter out = new TaskJsonWriter(new OutputStreamWriter(
+                Files.newOutputStream(commit.stage(ACTIVE_TASKS_PATH)), StandardCharsets.UTF_8))) {
+            out.writeRaw("[\n");
+            boolean first = true;
+            if (!replace) {
+                try (TaskJsonReader in = openTasks(ACTIVE_TASKS_PATH)) {
+                    for (Task task = in.next(); task != null; task = in.next()) {
+                        out.writeRaw(first ? "  " : ",\n  ");
+                        out.writeTask(task);
+                        first = false;
+                        maxId = Math.max(maxId, task.getId());
+                    }
+                }
+            }
+            while (tasks.hasNext()) {
+                Task task = tasks.next();
+                maxId = assignImportId(task, maxId, keptIds);
+                imported++;
+                if (task.isDeleted()) {
+                    trashed.add(task);
+                    if (trashed.size() == IMPORT_CHUNK) {
+                        trash.append(trashed, commit);
+                        trashed.clear();
+                    }
+                } else {
+                    out.writeRaw(first ? "  " : ",\n  ");
+                    out.writeTask(task);
+                    first = false;
+                }
+            }
+            out.writeRaw(first ? "]" : "\n]");
+        }
+        trash.append(trashed, commit);
+        trash.writeManifest(commit);
+        journal.discardAll(commit);
+        return imported;
+    }
+
+    /** journal mode: the tasks are appended to the journal as adds and deletes, a chunk per write. */
+    private int importJournal(Iterator<Task> tasks, boolean replace, StoreCommit commit) throws IOException {
+        int[] maxId = { 0 };
+        long committed = readVersion()[1];
+        if (replace) {
+            // the emptied snapshot and the new log replace the old ones together
+            writeSnapshot(List.of(), ACTIVE_TASKS_PATH, commit);
+            writeSnapshot(List.of(), DELETED_TASKS_PATH, commit);
+            journal.reset(commit);
+        } else {
+            Consumer<Task> track = task -> maxId[0] = Math.max(maxId[0], task.getId());
+            streamTasks(ACTIVE_TASKS_PATH, track);
+            streamTasks(DELETED_TASKS_PATH, track);
+            journal.forEach(committed, m -> maxId[0] = Math.max(maxId[0], m.getId()));
+        }
+
+        BitSet keptIds = replace ? new BitSet() : null;
+        int imported = 0;
+        List<Mutation> chunk = new ArrayList<>();
+        while (tasks.hasNext()) {
+            Task task = tasks.next();
+            maxId[0] = assignImportId(task, maxId[0], keptIds);
+            imported++;
+            chunk.add(task.isDeleted() ? Mutation.delete(task) : Mutation.add(task));
+            if (chunk.size() == IMPORT_CHUNK) {
+                journal.append(chunk, committed, commit);
+                chunk.clear();
+            }
+        }
+        journal.append(chunk, committed, commit);
+        return imported;
+    }
+
+    /** sharded mode: each task is added to its shard, which is written once the import moves past it. */
+    private int importShards(Iterator<Task> tasks, boolean replace, StoreCommit commit) throws IOException {
+        ShardedStore store = ShardedStore.open(shardSize);
+        if (replace) {
+            for (int index : store.shardIndexes())
+                store.writeShard(index, List.of(), commit);
+        }
+        int maxId = store.lastId();
+        BitSet keptIds = replace ? new BitSet() : null;
+        int imported = 0;
+        int current = -1;
+        List<Task> shard = null;
+        while (tasks.hasNext()) {
+            Task task = tasks.next();
+            maxId = assignImportId(task, maxId, keptIds);
+            imported++;
+            int index = store.shardOf(task.getId());
+            if (index != current) {
+                if (shard != null)
+                    store.writeShard(current, shard, commit);
+                current = index;
+                shard = store.readShard(index, commit);
+            }
+            shard.add(task);
+        }
+        if (shard != null)
+            store.writeShard(current, shard, commit);
+        store.writeManifest(commit);
+        return imported;
+    }
+
+    /**
+     * Gives {@code task} a free id unless it can keep its own; returns the
+     * highest id now taken. {@code keptIds} holds the ids already imported
+     * when they are kept as given, or is null when only ids above the store's
+     * are kept.
+     */
+    private static int assignImportId(Task task, int maxId, BitSet keptIds) {
+        int id = task.getId();
+        boolean free = id > maxId || keptIds != null && id > 0 && !keptIds.get(id);
+        if (!free)
+            task.setId(maxId + 1);
+        if (keptIds != null)
+            keptIds.set(task.getId());
+        return Math.max(maxId, task.getId());
+    }
+
+    private static TaskJsonReader openTasks(Path path) throws IOException {
+        try {
+            return new TaskJsonReader(new InputStreamReader(Files.newInputStream(path), StandardCharsets.UTF_8));
+        } catch (NoSuchFileException e) {
+            return new TaskJsonReader(Reader.nullReader());
+        }
+    }
+
+    private static void streamTasks(Path path, Consumer<? super Task> action) throws IOException {
+        try (TaskJsonReader in = openTasks(path)) {
+            for (Task task = in.next(); task != null; task = in.next())
+                action.accept(task);
+        }
+    }
+
+    private static void streamTasks(InputStream file, Consumer<? super Task> action) throws IOException {
+        try (TaskJsonReader in = new TaskJsonReader(new InputStreamReader(file, StandardCharsets.UTF_8))) {
+            for (Task task = in.next(); task != null; task = in.next())
+                action.accept(task);
+        }
+    }
+
+    private static InputStream openFile(Path path) throws IOException {
+        try {
+            return Files.newInputStream(path);
+        } catch (NoSuchFileException e) {
+            return InputStream.nullInputStream();
+        }
+    }
+
+    private void writeAll(Collection<Task> active, Collection<Task> deleted, StoreCommit commit) throws IOException {
+        writeSnapshot(active, ACTIVE_TASKS_PATH, commit);
+        writeSnapshot(deleted, DELETED_TASKS_PATH, commit);
+        // the snapshot now holds everything the journal did
+        journal.discardAll(commit);
+    }
+
+    private long readGeneration() {
+        return readVersion()[0];
+    }
+
+    /**
+     * The generation and, in journal mode, the committed length of the live
+     * journal: {@code <generation> [<journal bytes>]}. The length is -1 if
+     * not recorded, the generation -1 if it cannot be read.
+     */
+    private long[] readVersion() {
+        try {
+            String[] fields = Files.readString(VERSION_PATH).strip().split(" ");
+            return new long[] { Long.parseLong(fields[0]), fields.length > 1 ? Long.parseLong(fields[1]) : -1 };
+        } catch (NoSuchFileException e) {
+            return new long[] { 0, -1 };
+        } catch (IOException | NumberFormatException e) {
+            return new long[] { UNKNOWN_GENERATION, -1 };
+        }
+    }
+
+    /** Stages tasks.version for the given generation, with the journal's length once the commit is applied. */
+    private void writeVersion(StoreCommit commit, long generation) throws IOException {
+        String version = Long.toString(generation);
+        if (journaled)
+            version += " " + journal.committedLength(commit);
+        Files.writeString(commit.stage(VERSION_PATH), version);
+    }
+
+    /** Applies {@code commit} as the given generation; tasks.version is renamed in last. */
+    private void apply(StoreCommit commit, long generation) throws IOException {
+        writeVersion(commit, generation);
+        commit.apply();
+    }
+
+    /** The writer lock, after finishing any commit a crash interrupted. */
+    private StoreLock lock() throws IOException {
+        StoreLock lock = StoreLock.acquire(LOCK_PATH);
+        try {
+            StoreCommit.recover();
+        } catch (IOException | RuntimeException e) {
+            lock.close();
+            throw e;
+        }
+        return lock;
+    }
+
+    private static Object fileKey(Path path) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            return attributes.fileKey() != null ? attributes.fileKey() : attributes.lastModifiedTime();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private void compactInBackground() {
+        if (compactor != null && compactor.isAlive())
+            return;
+        // not a daemon thread: a CLI call still finishes the snapshot before the JVM exits
+        compactor = new Thread(this::compact, "journal-compactor");
+        compactor.start();
+    }
+
+    private void compact() {
+        // holds the writer lock throughout, so no append or rewrite can interleave with the fold
+        try {
+            StoreLock lock = lock();
+            try (lock) {
+                if (!journal.isCompacting()) {
+                    long[] version = readVersion();
+                    StoreCommit rotation = new StoreCommit();
+                    if (!journal.rotate(version[1], rotation))
+                        return;
+                    // same generation, with the live journal now empty
+                    apply(rotation, Math.max(version[0], 0));
+                }
+
+                StoreState state = new StoreState(loadTasksFromFile(ACTIVE_TASKS_PATH),
+                        loadTasksFromFile(DELETED_TASKS_PATH));
+                journal.replayRotated(state);
+
+                // the same tasks in another form: the generation stays
+                StoreCommit commit = new StoreCommit();
+                writeSnapshot(state.activeTasks(), ACTIVE_TASKS_PATH, commit);
+                writeSnapshot(state.deletedTasks(), DELETED_TASKS_PATH, commit);
+                journal.discardRotated(commit);
+                commit.apply();
+            }
+        } catch (IOException e) {
+            System.err.println("Erro ao compactar: " + JOURNAL_PATH);
+        }
+    }
+
+    private void writeSnapshot(Collection<Task> tasks, Path path, StoreCommit commit) throws IOException {
+        Path tmp = commit.stage(path);
+        writeTasks(tasks, tmp);
+        // a rename keeps size, contents and modification time, so the stamp carries over to the target
+        long[] stamp = sourceStamp(tmp);
+        Metrics.count(Metrics.Counter.BYTES_WRITTEN, stamp[0]);
+        Metrics.count(Metrics.Counter.TASKS_SERIALIZED, tasks.size());
+        // the next process to load this file reads the binary copy instead of parsing it
+        cacheSnapshot(path, new ArrayList<>(tasks), stamp);
+    }
+
+    private List<Task> loadTasksFromFile(Path path) {
+        if (!Files.exists(path)) {
+            return new ArrayList<>();
+        }
+        Metrics.Timer timer = Metrics.time(Metrics.Phase.PARSE);
+        try (timer) {
+            long[] stamp = sourceStamp(path);
+            if (snapshotCache) {
+                List<Task> cached = TaskSnapshot.read(cachePath(path), stamp);
+                if (cached != null) {
+                    if (Metrics.isEnabled())
+                        Metrics.count(Metrics.Counter.BYTES_READ, Files.size(cachePath(path)));
+                    Metrics.count(Metrics.Counter.TASKS_PARSED, cached.size());
+                    return cached;
+                }
+            }
+
+            List<Task> tasks = null;
+            if (Runtime.getRuntime().availableProcessors() > 1 && Files.size(path) >= parallelParseThreshold) {
+                tasks = ChunkedTaskLoader.load(path);
+            }
+            if (tasks == null) {
+                tasks = TaskJsonReader.readAll(
+                        new InputStreamReader(Files.newInputStream(path), StandardCharsets.UTF_8));
+            }
+            Metrics.count(Metrics.Counter.BYTES_READ, stamp[0]);
+            Metrics.count(Metrics.Counter.TASKS_PARSED, tasks.size());
+            // only if the file was not replaced while it was being parsed
+            if (Arrays.equals(stamp, sourceStamp(path)))
+                cacheSnapshot(path, tasks, stamp);
+            return tasks;
         } catch (IOException e) {
             System.err.println("Erro ao ler: " + path);
             return new ArrayList<>();
         }
     }
 
-    private void saveTasksToFile(List<Task> tasks, Path path) {
-        try {
-            String json = tasks.stream()
-                    .map(Task::toJson)
-                    .reduce((a, b) -> a + ",\n  " + b)
-                    .orElse("");
+    private static Path cachePath(Path path) {
+        return path.resolveSibling(path.getFileName() + ".cache");
+    }
 
-            Files.writeString(path, "[\n  " + json + "\n]");
+    private void cacheSnapshot(Path path, List<Task> tasks, long[] stamp) {
+        if (!snapshotCache)
+            return;
+        try {
+            TaskSnapshot.write(cachePath(path), tasks, stamp);
         } catch (IOException e) {
-            System.err.println("Erro ao salvar: " + path);
+            // only a cache: the JSON stays the source of truth
+        }
+    }
+
+    /**
+     * Identifies a version of a JSON file cheaply: size, modification time and
+     * a CRC of its first and last 4 KiB, so the check does not grow with the store.
+     */
+    private static long[] sourceStamp(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long modified = Files.getLastModifiedTime(path).to(TimeUnit.NANOSECONDS);
+
+            CRC32 crc = new CRC32();
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(size, STAMP_SAMPLE_BYTES));
+            channel.read(buffer, 0);
+            crc.update(buffer.flip());
+            if (size > STAMP_SAMPLE_BYTES) {
+                buffer.clear();
+                channel.read(buffer, size - STAMP_SAMPLE_BYTES);
+                crc.update(buffer.flip());
+            }
+            return new long[] { size, modified, crc.getValue() };
+        }
+    }
+
+    private void writeTasks(Collection<Task> tasks, Path path) throws IOException {
+        try (TaskJsonWriter out = new TaskJsonWriter(
+                new OutputStreamWriter(Files.newOutputStream(path), StandardCharsets.UTF_8))) {
+            out.writeArray(tasks);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,329 @@
+package repository;
+
+import metrics.Metrics;
+import model.Task;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The trash as append-only, gzip-compressed NDJSON segments, one per UTC day
+ * of deletion ({@code trash/trash-yyyy-MM-dd.ndjson.gz}). Moving tasks to the
+ * trash appends one gzip member to the segment of the day; expiry deletes
+ * whole segments. A manifest with the size and highest id of each segment
+ * answers everything except listing the trash without opening a segment.
+ * It also records how long each segment is, so bytes appended by a commit
+ * that never completed are not read, and are cut off by the next append.
+ */
+final class TrashStore {
+
+    static final Path DIRECTORY = Path.of("trash");
+    static final Path MANIFEST = DIRECTORY.resolve("manifest");
+    private static final long DAY_MS = 24 * 60 * 60 * 1000L;
+
+    private static final class Segment {
+        int count;
+        int maxId;
+        // committed length of the file; -1 if the manifest predates lengths
+        long bytes = -1;
+    }
+
+    // keyed by epoch day
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+
+    private TrashStore() {
+    }
+
+    static TrashStore open() throws IOException {
+        TrashStore store = new TrashStore();
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(MANIFEST);
+        } catch (NoSuchFileException e) {
+            if (Files.isDirectory(DIRECTORY))
+                store.rebuildManifest();
+            return store;
+        }
+        for (String line : lines) {
+            String[] f = line.trim().split("\\s+");
+            if (f.length == 3 || f.length == 4) {
+                Segment segment = new Segment();
+                segment.count = Integer.parseInt(f[1]);
+                segment.maxId = Integer.parseInt(f[2]);
+                if (f.length == 4)
+                    segment.bytes = Long.parseLong(f[3]);
+                store.segments.put(LocalDate.parse(f[0]).toEpochDay(), segment);
+            }
+        }
+        return store;
+    }
+
+    int size() {
+        int size = 0;
+        for (Segment segment : segments.values())
+            size += segment.count;
+        return size;
+    }
+
+    int maxId() {
+        int max = 0;
+        for (Segment segment : segments.values())
+            max = Math.max(max, segment.maxId);
+        return max;
+    }
+
+    /** End of the day of the oldest segment in epoch millis, or Long.MAX_VALUE if the trash is empty. */
+    long oldestSegmentEnd() {
+        return segments.isEmpty() ? Long.MAX_VALUE : (segments.firstKey() + 1) * DAY_MS;
+    }
+
+    /** End of the day, in epoch millis, of the segment a task deleted at {@code deletedAtMillis} goes to. */
+    static long segmentEnd(long deletedAtMillis) {
+        return (Math.floorDiv(deletedAtMillis, DAY_MS) + 1) * DAY_MS;
+    }
+
+    /**
+     * Appends the tasks to the segments of their deletion days: in place for
+     * segments already in the manifest, to a new file staged in
+     * {@code commit} otherwise. Call {@link #writeManifest} afterwards.
+     */
+    void append(List<Task> tasks, StoreCommit commit) throws IOException {
+        Map<Long, List<Task>> byDay = new TreeMap<>();
+        for (Task task : tasks) {
+            byDay.computeIfAbsent(Math.floorDiv(task.getDeletedAtMillis(), DAY_MS), d -> new ArrayList<>()).add(task);
+        }
+
+        Files.createDirectories(DIRECTORY);
+        for (Map.Entry<Long, List<Task>> e : byDay.entrySet()) {
+            ByteArrayOutputStream member = new ByteArrayOutputStream();
+            try (Writer out = new OutputStreamWriter(new GZIPOutputStream(member), StandardCharsets.UTF_8)) {
+                for (Task task : e.getValue()) {
+                    out.write(task.toJson());
+                    out.write('\n');
+                }
+            }
+            Path path = segmentPath(e.getKey());
+            Segment segment = segments.get(e.getKey());
+            Path file = segment != null ? commit.current(path) : commit.stage(path);
+            if (file.equals(path)) {
+                if (segment.bytes >= 0)
+                    truncate(path, segment.bytes);
+                commit.sync(path);
+            }
+            try (OutputStream out = Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                member.writeTo(out);
+            }
+            Metrics.count(Metrics.Counter.BYTES_WRITTEN, member.size());
+            Metrics.count(Metrics.Counter.TASKS_SERIALIZED, e.getValue().size());
+
+            if (segment == null) {
+                segment = new Segment();
+                segments.put(e.getKey(), segment);
+            }
+            segment.bytes = Files.size(file);
+            for (Task task : e.getValue()) {
+                segment.count++;
+                segment.maxId = Math.max(segment.maxId, task.getId());
+            }
+        }
+    }
+
+    List<Task> readAll() throws IOException {
+        List<Task> tasks = new ArrayList<>();
+        forEach(tasks::add);
+        return tasks;
+    }
+
+    /** Streams the trash, oldest segment first, one task at a time. */
+    void forEach(Consumer<Task> action) throws IOException {
+        for (Map.Entry<Long, Segment> e : segments.entrySet()) {
+            readSegment(segmentPath(e.getKey()), e.getValue().bytes, action);
+        }
+    }
+
+    /**
+     * Opens the committed part of every segment, oldest first, for
+     * {@link #readSegment(InputStream, Consumer)}. Read after the lock is
+     * released, they still hold the trash as it was: later commits append
+     * past the lengths read here or delete whole files.
+     */
+    List<InputStream> openSegments() throws IOException {
+        List<InputStream> opened = new ArrayList<>();
+        try {
+            for (Map.Entry<Long, Segment> e : segments.entrySet()) {
+                long bytes = e.getValue().bytes;
+                InputStream file;
+                try {
+                    file = Files.newInputStream(segmentPath(e.getKey()));
+                } catch (NoSuchFileException missing) {
+                    continue;
+                }
+                opened.add(bytes >= 0 ? limit(file, bytes) : file);
+            }
+        } catch (IOException e) {
+            for (InputStream in : opened)
+                in.close();
+            throw e;
+        }
+        return opened;
+    }
+
+    /** Deletes the segments whose whole day is before {@code cutoff}; returns how many tasks they held. */
+    int dropSegmentsEndingBefore(long cutoff, StoreCommit commit) throws IOException {
+        int dropped = 0;
+        while (!segments.isEmpty() && oldestSegmentEnd() <= cutoff) {
+            Map.Entry<Long, Segment> oldest = segments.pollFirstEntry();
+            commit.delete(segmentPath(oldest.getKey()));
+            dropped += oldest.getValue().count;
+        }
+        return dropped;
+    }
+
+    /** How many tasks {@link #dropSegmentsEndingBefore} would drop. */
+    int sizeEndingBefore(long cutoff) {
+        int size = 0;
+        for (Segment segment : segments.headMap(Math.floorDiv(cutoff, DAY_MS)).values())
+            size += segment.count;
+        return size;
+    }
+
+    /** The trash without the segments {@link #dropSegmentsEndingBefore} would drop, for reading only. */
+    TrashStore withoutSegmentsEndingBefore(long cutoff) {
+        TrashStore view = new TrashStore();
+        view.segments.putAll(segments.tailMap(Math.floorDiv(cutoff, DAY_MS)));
+        return view;
+    }
+
+    void clear(StoreCommit commit) throws IOException {
+        for (long day : segments.keySet()) {
+            commit.delete(segmentPath(day));
+        }
+        segments.clear();
+    }
+
+    void writeManifest(StoreCommit commit) throws IOException {
+        Files.createDirectories(DIRECTORY);
+        Files.writeString(commit.stage(MANIFEST), manifest());
+    }
+
+    private String manifest() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<Long, Segment> e : segments.entrySet()) {
+            sb.append(LocalDate.ofEpochDay(e.getKey())).append(' ').append(e.getValue().count).append(' ')
+                    .append(e.getValue().maxId).append(' ').append(e.getValue().bytes).append('\n');
+        }
+        return sb.toString();
+    }
+
+    /** The manifest went missing: recount the segments on disk. */
+    private void rebuildManifest() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(DIRECTORY, "trash-*.ndjson.gz")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                Segment segment = new Segment();
+                segment.bytes = Files.size(file);
+                readSegment(file, segment.bytes, task -> {
+                    segment.count++;
+                    segment.maxId = Math.max(segment.maxId, task.getId());
+                });
+                segments.put(LocalDate.parse(name.substring(6, 16)).toEpochDay(), segment);
+            }
+        }
+        Path tmp = MANIFEST.resolveSibling("manifest.tmp");
+        Files.writeString(tmp, manifest());
+        Files.move(tmp, MANIFEST, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Reads the first {@code bytes} bytes of a segment, or all of it if -1. */
+    private static void readSegment(Path path, long bytes, Consumer<Task> action) throws IOException {
+        InputStream file;
+        try {
+            file = Files.newInputStream(path);
+        } catch (NoSuchFileException e) {
+            return; // dropped by a concurrent purge
+        }
+        readSegment(bytes >= 0 ? limit(file, bytes) : file, action);
+    }
+
+    /** Reads a segment opened by {@link #openSegments()}, and closes it. */
+    static void readSegment(InputStream file, Consumer<Task> action) throws IOException {
+        try (file; BufferedReader in = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (!line.isBlank())
+                    action.accept(Task.fromJson(line));
+            }
+        } catch (EOFException e) {
+            // a member cut short by a crash during an append; the tasks before it are intact
+        }
+    }
+
+    /** Cuts off what an unfinished commit appended past the committed end. */
+    private static void truncate(Path path, long bytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            if (channel.size() > bytes)
+                channel.truncate(bytes);
+        }
+    }
+
+    /** The first {@code bytes} bytes of {@code in}. */
+    private static InputStream limit(InputStream in, long bytes) {
+        return new FilterInputStream(in) {
+            private long left = bytes;
+
+            @Override
+            public int read() throws IOException {
+                if (left <= 0)
+                    return -1;
+                int b = super.read();
+                if (b >= 0)
+                    left--;
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (left <= 0)
+                    return -1;
+                int n = super.read(b, off, (int) Math.min(len, left));
+                if (n > 0)
+                    left -= n;
+                return n;
+            }
+
+            @Override
+            public int available() throws IOException {
+                return (int) Math.min(left, super.available());
+            }
+        };
+    }
+
+    private static Path segmentPath(long day) {
+        return DIRECTORY.resolve("trash-" + LocalDate.ofEpochDay(day) + ".ndjson.gz");
+    }
+}
@@ -0,0 +1,230 @@
+package server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import model.Status;
+import model.Task;
+import model.TaskJsonWriter;
+import service.TaskQuery;
+import service.TaskService;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * HTTP API over a {@link TaskService}, bound to localhost. Requests run in
+ * parallel on a pool of worker threads: reads share the service's read
+ * lock and concurrent writes are persisted by a shared commit.
+ *
+ * <pre>
+ * GET    /tasks[?status=&amp;since=&amp;sort=&amp;limit=&amp;offset=]   page of active tasks
+ * POST   /tasks                  body: description        creates a task (201)
+ * GET    /tasks/{id}
+ * PUT    /tasks/{id}/status      body: todo|in_progress|done
+ * DELETE /tasks/{id}             moves the task to the trash (204)
+ * DELETE /trash                  empties the trash (204)
+ * </pre>
+ *
+ * Tasks are answered in the same JSON as tasks.json, errors as
+ * {@code {"error": "..."}}.
+ */
+public class TaskServer {
+
+    public static final int DEFAULT_PORT = 8080;
+
+    private static final long REFRESH_SECONDS = 1;
+
+    private final TaskService service;
+    private final HttpServer http;
+    private final ExecutorService workers;
+    private final ScheduledExecutorService refresher;
+
+    public TaskServer(TaskService service, int port, int threads) throws IOException {
+        this.service = service;
+        // headers and body go out in separate writes; with Nagle on, each reply waits for a delayed ACK (~40 ms)
+        if (System.getProperty("sun.net.httpserver.nodelay") == null)
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        this.http = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.workers = Executors.newFixedThreadPool(threads, daemonThreads("http-worker"));
+        this.refresher = Executors.newSingleThreadScheduledExecutor(daemonThreads("http-refresh"));
+        http.createContext("/", this::handle);
+        http.setExecutor(workers);
+    }
+
+    /** Threads for the pool; defaults to two per processor, at least 4. */
+    public static int defaultThreads() {
+        return Integer.getInteger("task.serve.threads", Math.max(4, 2 * Runtime.getRuntime().availableProcessors()));
+    }
+
+    public int getPort() {
+        return http.getAddress().getPort();
+    }
+
+    public void start() {
+        // picks up writes by other processes and runs maintenance without holding up requests
+        refresher.scheduleWithFixedDelay(() -> {
+            try {
+                service.refresh();
+                service.runMaintenance();
+            } catch (RuntimeException e) {
+                System.err.println("[ERROR] " + e.getMessage());
+            }
+        }, REFRESH_SECONDS, REFRESH_SECONDS, TimeUnit.SECONDS);
+        http.start();
+    }
+
+    public void stop() {
+        http.stop(0);
+        refresher.shutdownNow();
+        workers.shutdown();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String method = exchange.getRequestMethod();
+            String[] path = exchange.getRequestURI().getPath().replaceAll("^/+|/+$", "").split("/");
+
+            try {
+                if (path[0].equals("tasks") && path.length == 1) {
+                    if (method.equals("GET"))
+                        list(exchange);
+                    else if (method.equals("POST"))
+                        add(exchange);
+                    else
+                        error(exchange, 405, "Método não permitido");
+                } else if (path[0].equals("tasks") && path.length <= 3) {
+                    int id = Integer.parseInt(path[1]);
+                    if (path.length == 2 && method.equals("GET"))
+                        reply(exchange, 200, service.findById(id, Task::toJson));
+                    else if (path.length == 2 && method.equals("DELETE"))
+                        noContent(exchange, service.delete(id));
+                    else if (path.length == 3 && path[2].equals("status") && method.equals("PUT"))
+                        updateStatus(exchange, id);
+                    else
+                        error(exchange, 405, "Método não permitido");
+                } else if (path[0].equals("trash") && path.length == 1 && method.equals("DELETE")) {
+                    service.emptyTrash();
+                    noContent(exchange, true);
+                } else {
+                    error(exchange, 404, "Recurso não encontrado");
+                }
+            } catch (NumberFormatException e) {
+                error(exchange, 400, "ID inválido. Use um número.");
+            } catch (IllegalArgumentException e) {
+                error(exchange, 400, e.getMessage());
+            } catch (RuntimeException e) {
+                error(exchange, 500, String.valueOf(e.getMessage()));
+            }
+        }
+    }
+
+    private void list(HttpExchange exchange) throws IOException {
+        TaskQuery query = new TaskQuery();
+        String params = exchange.getRequestURI().getRawQuery();
+        if (params != null) {
+            for (String param : params.split("&")) {
+                int eq = param.indexOf('=');
+                if (eq < 0)
+                    throw new IllegalArgumentException("Valor ausente para " + param);
+                query.set(URLDecoder.decode(param.substring(0, eq), StandardCharsets.UTF_8),
+                        URLDecoder.decode(param.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+
+        // serialized under the read lock, so no task is seen halfway through a change
+        StringWriter body = new StringWriter();
+        try (TaskJsonWriter out = new TaskJsonWriter(body)) {
+            out.writeRaw("[");
+            boolean[] first = { true };
+            service.list(query, task -> {
+                try {
+                    out.writeRaw(first[0] ? "\n  " : ",\n  ");
+                    out.writeTask(task);
+                    first[0] = false;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            out.writeRaw(first[0] ? "]" : "\n]");
+        }
+        send(exchange, 200, body.toString());
+    }
+
+    private void add(HttpExchange exchange) throws IOException {
+        String description = readBody(exchange);
+        if (description.isBlank()) {
+            error(exchange, 400, "Descrição vazia");
+            return;
+        }
+        Task task = service.addTask(description);
+        reply(exchange, 201, service.findById(task.getId(), Task::toJson));
+    }
+
+    private void updateStatus(HttpExchange exchange, int id) throws IOException {
+        Status status = Status.fromValue(readBody(exchange));
+        if (!service.updateStatus(id, status)) {
+            error(exchange, 404, "Task #" + id + " não encontrada.");
+            return;
+        }
+        reply(exchange, 200, service.findById(id, Task::toJson));
+    }
+
+    private static String readBody(HttpExchange exchange) throws IOException {
+        return new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8).strip();
+    }
+
+    private static void reply(HttpExchange exchange, int status, Optional<String> json) throws IOException {
+        if (json.isPresent())
+            send(exchange, status, json.get());
+        else
+            error(exchange, 404, "Task não encontrada.");
+    }
+
+    private static void noContent(HttpExchange exchange, boolean found) throws IOException {
+        if (found)
+            exchange.sendResponseHeaders(204, -1);
+        else
+            error(exchange, 404, "Task não encontrada.");
+    }
+
+    private static void error(HttpExchange exchange, int status, String message) throws IOException {
+        StringWriter body = new StringWriter();
+        try (TaskJsonWriter out = new TaskJsonWriter(body)) {
+            out.writeRaw("{\"error\": \"");
+            out.writeEscaped(message);
+            out.writeRaw("\"}");
+        }
+        send(exchange, status, body.toString());
+    }
+
+    private static void send(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,73 @@
+package service;
+
+import java.util.Arrays;
+
+/**
+ * Min-heap of (due time, task id) pairs kept in two primitive arrays.
+ * Entries are never updated in place: when a task changes, a new entry is
+ * pushed and the stale one is recognised and dropped by the caller when it
+ * reaches the top.
+ */
+class ExpirySchedule {
+
+    private long[] dueAt = new long[16];
+    private int[] ids = new int[16];
+    private int size;
+
+    void add(int id, long due) {
+        if (size == ids.length) {
+            dueAt = Arrays.copyOf(dueAt, size * 2);
+            ids = Arrays.copyOf(ids, size * 2);
+        }
+        int i = size++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (dueAt[parent] <= due)
+                break;
+            dueAt[i] = dueAt[parent];
+            ids[i] = ids[parent];
+            i = parent;
+        }
+        dueAt[i] = due;
+        ids[i] = id;
+    }
+
+    boolean hasDue(long now) {
+        return size > 0 && dueAt[0] <= now;
+    }
+
+    int peekId() {
+        return ids[0];
+    }
+
+    long peekDue() {
+        return dueAt[0];
+    }
+
+    void poll() {
+        long lastDue = dueAt[--size];
+        int lastId = ids[size];
+        int i = 0;
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && dueAt[child + 1] < dueAt[child])
+                child++;
+            if (lastDue <= dueAt[child])
+                break;
+            dueAt[i] = dueAt[child];
+            ids[i] = ids[child];
+            i = child;
+        }
+        dueAt[i] = lastDue;
+        ids[i] = lastId;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    int size() {
+        return size;
+    }
+}
@@ -0,0 +1,324 @@
+package service;
+
+import model.Task;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Inverted index from description tokens to the sorted ids of the active
+ * tasks containing them. Tokens are lowercased letter/digit runs with
+ * accents removed. Persisted to {@code tasks.idx}, tagged with the store
+ * generation it was built from, so it is only rebuilt after the store
+ * changed behind its back.
+ */
+class SearchIndex {
+
+    static final Path INDEX_PATH = Path.of("tasks.idx");
+
+    private static final int MAGIC = 0x54494458; // "TIDX"
+    private static final int FORMAT = 1;
+    private static final int[] EMPTY = new int[0];
+
+    private final TreeMap<String, Postings> terms = new TreeMap<>();
+
+    /** Sorted, duplicate-free ids; appends are the common case since ids only grow. */
+    private static final class Postings {
+        int[] ids = new int[2];
+        int size;
+
+        void add(int id) {
+            if (size > 0 && ids[size - 1] >= id) {
+                int at = Arrays.binarySearch(ids, 0, size, id);
+                if (at >= 0)
+                    return;
+                insert(-at - 1, id);
+                return;
+            }
+            insert(size, id);
+        }
+
+        private void insert(int at, int id) {
+            if (size == ids.length)
+                ids = Arrays.copyOf(ids, size * 2);
+            System.arraycopy(ids, at, ids, at + 1, size - at);
+            ids[at] = id;
+            size++;
+        }
+
+        void remove(int id) {
+            int at = Arrays.binarySearch(ids, 0, size, id);
+            if (at >= 0) {
+                System.arraycopy(ids, at + 1, ids, at, size - at - 1);
+                size--;
+            }
+        }
+    }
+
+    static SearchIndex build(Iterable<Task> tasks) {
+        SearchIndex index = new SearchIndex();
+        for (Task task : tasks) {
+            index.add(task);
+        }
+        return index;
+    }
+
+    void add(Task task) {
+        for (String token : tokenize(task.getDescription())) {
+            terms.computeIfAbsent(token, t -> new Postings()).add(task.getId());
+        }
+    }
+
+    void remove(Task task) {
+        for (String token : tokenize(task.getDescription())) {
+            Postings postings = terms.get(token);
+            if (postings != null) {
+                postings.remove(task.getId());
+                if (postings.size == 0)
+                    terms.remove(token);
+            }
+        }
+    }
+
+    /**
+     * Evaluates a query of whitespace-separated terms. Terms are ANDed;
+     * {@code OR} (or {@code |}) separates alternatives and binds looser than
+     * AND. A trailing {@code *} makes a term a prefix. Returns sorted ids.
+     */
+    int[] search(String query) {
+        Postings result = null;
+        List<Postings> group = new ArrayList<>();
+
+        for (String word : query.trim().split("\\s+")) {
+            if (word.equals("OR") || word.equals("|")) {
+                result = union(result, intersect(group));
+                group.clear();
+                continue;
+            }
+            boolean prefix = word.endsWith("*");
+            List<String> tokens = tokenize(prefix ? word.substring(0, word.length() - 1) : word);
+            for (int i = 0; i < tokens.size(); i++) {
+                // in "e-mail*" only the last token is a prefix
+                group.add(prefix && i == tokens.size() - 1 ? prefix(tokens.get(i)) : exact(tokens.get(i)));
+            }
+        }
+        result = union(result, intersect(group));
+        return result == null ? EMPTY : Arrays.copyOf(result.ids, result.size);
+    }
+
+    // operands are never modified, so stored lists are used as they are, without copying
+
+    private Postings exact(String token) {
+        Postings postings = terms.get(token);
+        return postings == null ? new Postings() : postings;
+    }
+
+    private Postings prefix(String token) {
+        Map<String, Postings> matches = terms.subMap(token, true, token + Character.MAX_VALUE, true);
+        if (matches.size() <= 1)
+            return matches.isEmpty() ? new Postings() : matches.values().iterator().next();
+
+        int total = 0;
+        for (Postings p : matches.values())
+            total += p.size;
+        Postings union = new Postings();
+        union.ids = new int[total];
+        for (Postings p : matches.values()) {
+            System.arraycopy(p.ids, 0, union.ids, union.size, p.size);
+            union.size += p.size;
+        }
+        Arrays.sort(union.ids);
+        int n = 0;
+        for (int i = 0; i < total; i++) {
+            if (n == 0 || union.ids[n - 1] != union.ids[i])
+                union.ids[n++] = union.ids[i];
+        }
+        union.size = n;
+        return union;
+    }
+
+    /** Intersects from the shortest list up, galloping through the longer ones. */
+    private static Postings intersect(List<Postings> lists) {
+        if (lists.isEmpty())
+            return null;
+        lists.sort(Comparator.comparingInt(p -> p.size));
+
+        Postings result = lists.get(0);
+        for (int l = 1; l < lists.size() && result.size > 0; l++) {
+            Postings other = lists.get(l);
+            Postings next = new Postings();
+            next.ids = new int[result.size];
+            int from = 0;
+            for (int i = 0; i < result.size && from < other.size; i++) {
+                int id = result.ids[i];
+                int at = gallop(other, from, id);
+                if (at < other.size && other.ids[at] == id) {
+                    next.ids[next.size++] = id;
+                    from = at + 1;
+                } else {
+                    from = at;
+                }
+            }
+            result = next;
+        }
+        return result;
+    }
+
+    /** First position at or after {@code from} whose id is {@code >= id}. */
+    private static int gallop(Postings p, int from, int id) {
+        int step = 1;
+        int hi = from;
+        while (hi < p.size && p.ids[hi] < id) {
+            from = hi + 1;
+            hi += step;
+            step <<= 1;
+        }
+        int at = Arrays.binarySearch(p.ids, from, Math.min(hi + 1, p.size), id);
+        return at >= 0 ? at : -at - 1;
+    }
+
+    private static Postings union(Postings a, Postings b) {
+        if (a == null || b == null)
+            return a == null ? b : a;
+
+        Postings merged = new Postings();
+        merged.ids = new int[a.size + b.size];
+        int i = 0, j = 0, n = 0;
+        while (i < a.size && j < b.size) {
+            if (a.ids[i] < b.ids[j])
+                merged.ids[n++] = a.ids[i++];
+            else if (a.ids[i] > b.ids[j])
+                merged.ids[n++] = b.ids[j++];
+            else {
+                merged.ids[n++] = a.ids[i++];
+                j++;
+            }
+        }
+        while (i < a.size)
+            merged.ids[n++] = a.ids[i++];
+        while (j < b.size)
+            merged.ids[n++] = b.ids[j++];
+        merged.size = n;
+        return merged;
+    }
+
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null)
+            return tokens;
+
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) >= 0x80) {
+                // strip accents so "ação" is found by "acao"
+                text = Normalizer.normalize(text, Normalizer.Form.NFD).replaceAll("\\p{M}+", "");
+                break;
+            }
+        }
+
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean word = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (word && start < 0) {
+                start = i;
+            } else if (!word && start >= 0) {
+                String token = text.substring(start, i).toLowerCase(Locale.ROOT);
+                if (!tokens.contains(token))
+                    tokens.add(token);
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    /** Returns the persisted index if it was written for {@code generation}, otherwise null. */
+    static SearchIndex read(long generation) {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(INDEX_PATH), 64 * 1024))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT || in.readLong() != generation)
+                return null;
+
+            SearchIndex index = new SearchIndex();
+            int termCount = in.readInt();
+            for (int t = 0; t < termCount; t++) {
+                String term = in.readUTF();
+                Postings postings = new Postings();
+                postings.size = readVarInt(in);
+                postings.ids = new int[Math.max(2, postings.size)];
+                int id = 0;
+                for (int i = 0; i < postings.size; i++) {
+                    id += readVarInt(in);
+                    postings.ids[i] = id;
+                }
+                index.terms.put(term, postings);
+            }
+            return index;
+        } catch (IOException e) {
+            // missing, truncated or from another format: rebuilt by the caller
+            return null;
+        }
+    }
+
+    /** Writes the index atomically; ids are delta-encoded as varints. */
+    void write(long generation) {
+        Path tmp = INDEX_PATH.resolveSibling(INDEX_PATH.getFileName() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(tmp), 64 * 1024))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT);
+                out.writeLong(generation);
+                out.writeInt(terms.size());
+                for (Map.Entry<String, Postings> entry : terms.entrySet()) {
+                    Postings postings = entry.getValue();
+                    out.writeUTF(entry.getKey());
+                    writeVarInt(out, postings.size);
+                    int previous = 0;
+                    for (int i = 0; i < postings.size; i++) {
+                        writeVarInt(out, postings.ids[i] - previous);
+                        previous = postings.ids[i];
+                    }
+                }
+            }
+            Files.move(tmp, INDEX_PATH, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // the index is only a cache; the next search rebuilds it
+            System.err.println("[WARN] Não foi possível gravar " + INDEX_PATH + ": " + e.getMessage());
+        }
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.read();
+            if (b < 0)
+                throw new EOFException();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IOException("varint inválido");
+    }
+}
@@ -0,0 +1,221 @@
+package service;
+
+import model.Task;
+
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
+
+/**
+ * Insertion-ordered task collection with an open-addressing {@code int}
+ * index on the task id. Lookups and removals are O(1): a removed task
+ * leaves a hole in the order array, and holes are squeezed out once they
+ * make up half of it.
+ */
+class TaskIndex extends AbstractCollection<Task> {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private Task[] order;
+    private int end;
+    private int live;
+
+    // open addressing on ids; slots hold (position in order + 1), 0 marks an empty slot
+    private int[] keys;
+    private int[] slots;
+    private int mask;
+
+    private int modCount;
+
+    TaskIndex() {
+        order = new Task[MIN_CAPACITY];
+        keys = new int[MIN_CAPACITY];
+        slots = new int[MIN_CAPACITY];
+        mask = MIN_CAPACITY - 1;
+    }
+
+    Task get(int id) {
+        int i = find(id);
+        return i < 0 ? null : order[slots[i] - 1];
+    }
+
+    @Override
+    public boolean add(Task task) {
+        if (end == order.length) {
+            if (live < end / 2)
+                compact();
+            else
+                order = Arrays.copyOf(order, order.length * 2);
+        }
+        order[end] = task;
+        // a duplicate id keeps pointing at the first occurrence, like a linear scan would
+        if (find(task.getId()) < 0) {
+            insert(task.getId(), end);
+        }
+        end++;
+        live++;
+        modCount++;
+        return true;
+    }
+
+    Task remove(int id) {
+        int i = find(id);
+        if (i < 0)
+            return null;
+
+        int position = slots[i] - 1;
+        Task task = order[position];
+        order[position] = null;
+        deleteSlot(i);
+        live--;
+        modCount++;
+
+        if (live < end / 2 && end > MIN_CAPACITY)
+            compact();
+        return task;
+    }
+
+    /** Removes every task matching the filter, in a single pass. */
+    @Override
+    public boolean removeIf(Predicate<? super Task> filter) {
+        boolean removed = false;
+        for (int p = 0; p < end; p++) {
+            Task task = order[p];
+            if (task != null && filter.test(task)) {
+                order[p] = null;
+                int i = find(task.getId());
+                if (i >= 0 && slots[i] - 1 == p)
+                    deleteSlot(i);
+                live--;
+                removed = true;
+            }
+        }
+        if (removed) {
+            modCount++;
+            compact();
+        }
+        return removed;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(order, 0, end, null);
+        Arrays.fill(slots, 0);
+        end = 0;
+        live = 0;
+        modCount++;
+    }
+
+    @Override
+    public int size() {
+        return live;
+    }
+
+    @Override
+    public Iterator<Task> iterator() {
+        return new Iterator<>() {
+            private final int expectedModCount = modCount;
+            private int next = advance(0);
+
+            private int advance(int p) {
+                while (p < end && order[p] == null)
+                    p++;
+                return p;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next < end;
+            }
+
+            @Override
+            public Task next() {
+                if (modCount != expectedModCount)
+                    throw new ConcurrentModificationException();
+                if (next >= end)
+                    throw new NoSuchElementException();
+                Task task = order[next];
+                next = advance(next + 1);
+                return task;
+            }
+        };
+    }
+
+    private void compact() {
+        int w = 0;
+        for (int r = 0; r < end; r++) {
+            Task task = order[r];
+            if (task == null)
+                continue;
+            if (r != w) {
+                order[w] = task;
+                int i = find(task.getId());
+                if (i >= 0 && slots[i] - 1 == r)
+                    slots[i] = w + 1;
+            }
+            w++;
+        }
+        Arrays.fill(order, w, end, null);
+        end = w;
+    }
+
+    private int find(int id) {
+        for (int i = hash(id) & mask; slots[i] != 0; i = (i + 1) & mask) {
+            if (keys[i] == id)
+                return i;
+        }
+        return -1;
+    }
+
+    private void insert(int id, int position) {
+        // keep the load factor at or below one half
+        if ((live + 1) * 2 > keys.length)
+            rehash(keys.length * 2);
+
+        int i = hash(id) & mask;
+        while (slots[i] != 0)
+            i = (i + 1) & mask;
+        keys[i] = id;
+        slots[i] = position + 1;
+    }
+
+    /** Backward-shift deletion, so lookups never have to step over tombstones. */
+    private void deleteSlot(int i) {
+        int gap = i;
+        for (int j = (i + 1) & mask; slots[j] != 0; j = (j + 1) & mask) {
+            int home = hash(keys[j]) & mask;
+            // move j into the gap unless its home lies cyclically in (gap, j]
+            if (((j - home) & mask) >= ((j - gap) & mask)) {
+                keys[gap] = keys[j];
+                slots[gap] = slots[j];
+                gap = j;
+            }
+        }
+        slots[gap] = 0;
+    }
+
+    private void rehash(int newSize) {
+        int[] oldKeys = keys;
+        int[] oldSlots = slots;
+        keys = new int[newSize];
+        slots = new int[newSize];
+        mask = newSize - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldSlots[i] == 0)
+                continue;
+            int j = hash(oldKeys[i]) & mask;
+            while (slots[j] != 0)
+                j = (j + 1) & mask;
+            keys[j] = oldKeys[i];
+            slots[j] = oldSlots[i];
+        }
+    }
+
+    private static int hash(int id) {
+        int h = id * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
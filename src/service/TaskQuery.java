@@ -0,0 +1,114 @@
+package service;
+
+import model.Status;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+
+/** Filter, order and page for {@link TaskService#list(TaskQuery)}. Unset fields do not restrict the result. */
+public class TaskQuery {
+
+    public enum Sort {
+        /** Id order; an unfiltered list keeps the store order, which is the same for tasks added through the CLI. */
+        NONE,
+        CREATED,
+        UPDATED
+    }
+
+    private Status status;
+    private LocalDateTime since;
+    private Sort sort = Sort.NONE;
+    private int offset;
+    private int limit = Integer.MAX_VALUE;
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    /** Only tasks updated at or after this time. */
+    public LocalDateTime getSince() {
+        return since;
+    }
+
+    public void setSince(LocalDateTime since) {
+        this.since = since;
+    }
+
+    public Sort getSort() {
+        return sort;
+    }
+
+    public void setSort(Sort sort) {
+        this.sort = sort;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public void setOffset(int offset) {
+        if (offset < 0)
+            throw new IllegalArgumentException("Offset inválido: " + offset);
+        this.offset = offset;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public void setLimit(int limit) {
+        if (limit < 0)
+            throw new IllegalArgumentException("Limite inválido: " + limit);
+        this.limit = limit;
+    }
+
+    /**
+     * Sets a field from text, as given on the command line
+     * ({@code --status done}) or in a query string ({@code status=done}).
+     */
+    public void set(String name, String value) {
+        switch (name) {
+            case "status" -> setStatus(Status.fromValue(value));
+            case "since" -> setSince(parseDate(value));
+            case "sort" -> {
+                switch (value.toLowerCase()) {
+                    case "created" -> setSort(Sort.CREATED);
+                    case "updated" -> setSort(Sort.UPDATED);
+                    case "id" -> setSort(Sort.NONE);
+                    default -> throw new IllegalArgumentException("Ordenação inválida: " + value + " (use id, created ou updated)");
+                }
+            }
+            case "limit" -> setLimit(parseNumber(value, "Limite"));
+            case "offset" -> setOffset(parseNumber(value, "Offset"));
+            default -> throw new IllegalArgumentException("Opção inválida: " + name);
+        }
+    }
+
+    // not a NumberFormatException: the CLI reports those as a bad task id
+    private static int parseNumber(String value, String label) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(label + " inválido: " + value + " (use um número)");
+        }
+    }
+
+    private static LocalDateTime parseDate(String value) {
+        try {
+            if (value.length() == 10)
+                return LocalDate.parse(value).atStartOfDay();
+            return LocalDateTime.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Data inválida: " + value + " (use yyyy-MM-dd ou yyyy-MM-ddTHH:mm)");
+        }
+    }
+
+    boolean isUnfiltered() {
+        return status == null && since == null && sort == Sort.NONE;
+    }
+}
@@ -0,0 +1,167 @@
+package service;
+
+import model.Status;
+import model.Task;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.TreeSet;
+
+/**
+ * Secondary indexes over the active tasks for filtered list queries: the
+ * ids in each status as a bit set, and per status the tasks ordered by
+ * creation and by last update. A query walks only the sets of the statuses
+ * it asks for and, with a start time, only the tail of the update order.
+ *
+ * The ordered sets key on mutable task fields, so a task must be removed
+ * before its status or update time changes and added back afterwards.
+ */
+class TaskQueryIndex {
+
+    private static final Comparator<Task> BY_CREATED =
+            Comparator.comparingLong(Task::getCreatedAtMillis).thenComparingInt(Task::getId);
+    private static final Comparator<Task> BY_UPDATED =
+            Comparator.comparingLong(Task::getUpdatedAtMillis).thenComparingInt(Task::getId);
+    private static final Comparator<Task> BY_ID = Comparator.comparingInt(Task::getId);
+
+    private final EnumMap<Status, BitSet> ids = new EnumMap<>(Status.class);
+    private final EnumMap<Status, NavigableSet<Task>> byCreated = new EnumMap<>(Status.class);
+    private final EnumMap<Status, NavigableSet<Task>> byUpdated = new EnumMap<>(Status.class);
+
+    TaskQueryIndex() {
+        for (Status status : Status.values()) {
+            ids.put(status, new BitSet());
+            byCreated.put(status, new TreeSet<>(BY_CREATED));
+            byUpdated.put(status, new TreeSet<>(BY_UPDATED));
+        }
+    }
+
+    static TaskQueryIndex build(Iterable<Task> tasks) {
+        TaskQueryIndex index = new TaskQueryIndex();
+        for (Task task : tasks) {
+            index.add(task);
+        }
+        return index;
+    }
+
+    void add(Task task) {
+        Status status = task.getStatus();
+        ids.get(status).set(task.getId());
+        byCreated.get(status).add(task);
+        byUpdated.get(status).add(task);
+    }
+
+    void remove(Task task) {
+        Status status = task.getStatus();
+        ids.get(status).clear(task.getId());
+        byCreated.get(status).remove(task);
+        byUpdated.get(status).remove(task);
+    }
+
+    /** The matching tasks in query order, without offset and limit; produced lazily where the order allows. */
+    Iterator<Task> select(TaskQuery query, TaskIndex active) {
+        List<Status> statuses = query.getStatus() != null ? List.of(query.getStatus()) : List.of(Status.values());
+
+        if (query.getSince() != null) {
+            Task from = probe(query.getSince());
+            List<Iterator<Task>> parts = new ArrayList<>(statuses.size());
+            for (Status status : statuses) {
+                parts.add(byUpdated.get(status).tailSet(from, true).iterator());
+            }
+            Iterator<Task> recent = merge(parts, BY_UPDATED);
+            if (query.getSort() == TaskQuery.Sort.UPDATED)
+                return recent;
+
+            // only the tasks inside the time range are collected and reordered
+            List<Task> matches = new ArrayList<>();
+            recent.forEachRemaining(matches::add);
+            matches.sort(query.getSort() == TaskQuery.Sort.CREATED ? BY_CREATED : BY_ID);
+            return matches.iterator();
+        }
+
+        if (query.getSort() == TaskQuery.Sort.NONE) {
+            BitSet selected = ids.get(statuses.get(0));
+            if (statuses.size() > 1) {
+                selected = new BitSet();
+                for (Status status : statuses)
+                    selected.or(ids.get(status));
+            }
+            return byId(selected, active);
+        }
+
+        EnumMap<Status, NavigableSet<Task>> order = query.getSort() == TaskQuery.Sort.CREATED ? byCreated : byUpdated;
+        List<Iterator<Task>> parts = new ArrayList<>(statuses.size());
+        for (Status status : statuses) {
+            parts.add(order.get(status).iterator());
+        }
+        return merge(parts, order.get(statuses.get(0)).comparator());
+    }
+
+    private static Task probe(LocalDateTime since) {
+        // sorts before every real task updated at the same instant
+        return new Task(Integer.MIN_VALUE, "", Status.TODO, since, since, null);
+    }
+
+    private static Iterator<Task> byId(BitSet selected, TaskIndex active) {
+        return new Iterator<>() {
+            private int next = selected.nextSetBit(0);
+
+            @Override
+            public boolean hasNext() {
+                return next >= 0;
+            }
+
+            @Override
+            public Task next() {
+                if (next < 0)
+                    throw new NoSuchElementException();
+                Task task = active.get(next);
+                next = next == Integer.MAX_VALUE ? -1 : selected.nextSetBit(next + 1);
+                return task;
+            }
+        };
+    }
+
+    /** Lazily merges already sorted iterators; there is one per status, so a linear pick is enough. */
+    private static Iterator<Task> merge(List<Iterator<Task>> parts, Comparator<? super Task> order) {
+        if (parts.size() == 1)
+            return parts.get(0);
+
+        Task[] heads = new Task[parts.size()];
+        for (int i = 0; i < heads.length; i++) {
+            heads[i] = parts.get(i).hasNext() ? parts.get(i).next() : null;
+        }
+
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                for (Task head : heads) {
+                    if (head != null)
+                        return true;
+                }
+                return false;
+            }
+
+            @Override
+            public Task next() {
+                int min = -1;
+                for (int i = 0; i < heads.length; i++) {
+                    if (heads[i] != null && (min < 0 || order.compare(heads[i], heads[min]) < 0))
+                        min = i;
+                }
+                if (min < 0)
+                    throw new NoSuchElementException();
+                Task task = heads[min];
+                heads[min] = parts.get(min).hasNext() ? parts.get(min).next() : null;
+                return task;
+            }
+        };
+    }
+}
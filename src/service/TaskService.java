@@ -1,96 +1,822 @@
 package service;
 
+import metrics.Metrics;
 import model.Status;
 import model.Task;
+import repository.Mutation;
 import repository.TaskRepository;
 
+import java.io.IOException;
+import java.time.Duration;
 import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
-public class TaskService {
+/**
+ * Tasks in memory over a {@link TaskRepository}. Safe for use by several
+ * threads: changes take a write lock, reads share a read lock once whatever
+ * they need is loaded and indexed, and changes made while a commit is in
+ * progress are persisted together by the next one.
+ *
+ * Changes are persisted before the method that made them returns, unless
+ * the service writes behind (see {@link #TaskService(long, int)}).
+ */
+public class TaskService implements AutoCloseable {
+
+    private static final long DONE_RETENTION_MS = Duration.ofHours(24).toMillis();
+    private static final long TRASH_RETENTION_MS = Duration.ofDays(7).toMillis();
+    private static final int DEFAULT_FLUSH_THRESHOLD = 1000;
 
     private final TaskRepository repository;
 
-    private List<Task> activeTasks;
-    private List<Task> deletedTasks;
+    private final TaskIndex activeTasks;
+    private final TaskIndex deletedTasks;
     private int lastId;
 
+    // DONE tasks due to move to the trash, and trashed tasks due to be purged
+    private final ExpirySchedule doneExpiry = new ExpirySchedule();
+    private final ExpirySchedule trashExpiry = new ExpirySchedule();
+
+    private final List<Mutation> pending = new ArrayList<>();
+
+    // built on the first search only, then kept up to date
+    private SearchIndex searchIndex;
+    private long searchIndexGeneration = -1;
+
+    // built on the first filtered or sorted list, then kept up to date
+    private TaskQueryIndex queryIndex;
+
+    // active tasks per status, and TODO/IN_PROGRESS tasks by creation time (stale entries dropped lazily)
+    private final int[] statusCounts = new int[Status.values().length];
+    private final ExpirySchedule openSince = new ExpirySchedule();
+    private volatile long statsGeneration = -1;
+    // stats of a commit prepared but not yet published; written once finishCommit has published it
+    private volatile TaskStats unpublishedStats;
+    private long unpublishedGeneration;
+    private boolean batching;
+
+    // sharded store: only the shards needed so far are in memory
+    private boolean partial;
+
+    // cold trash (json mode): deletedTasks is only filled once the trash is listed
+    private final boolean coldTrash;
+    private boolean trashLoaded;
+    private int trashSize;
+    private long trashDueAt = Long.MAX_VALUE;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // changes are numbered as they are applied; one commit covers every change applied before it
+    private final ReentrantLock commitLock = new ReentrantLock();
+    private final Condition commitDone = commitLock.newCondition();
+    private boolean committing;
+    private long appliedSeq;
+    private volatile long committedSeq;
+
+    // write-behind: a background thread commits what mutators left pending
+    private final long flushIntervalMs;
+    private final int flushThreshold;
+    private final ScheduledThreadPoolExecutor flusher;
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final AtomicBoolean flushQueued = new AtomicBoolean();
+    private final Thread shutdownHook;
+    private volatile boolean closed;
+
+    /** Writes behind if {@code task.writeBehindMs} is set, flushing at {@code task.writeBehindChanges} changes. */
     public TaskService() {
+        this(Long.getLong("task.writeBehindMs", 0), Integer.getInteger("task.writeBehindChanges",
+                DEFAULT_FLUSH_THRESHOLD));
+    }
+
+    /**
+     * With {@code flushIntervalMs} above zero, changes are written behind:
+     * mutators return as soon as the change is in memory, and a background
+     * thread persists, in one commit, everything changed up to
+     * {@code flushIntervalMs} after the first unsaved change, or as soon as
+     * {@code flushThreshold} changes are waiting. {@link #flush()} persists
+     * at once. A shutdown hook calls {@link #close()}, so a clean exit loses
+     * nothing; a crash can lose the last interval.
+     */
+    public TaskService(long flushIntervalMs, int flushThreshold) {
         this.repository = new TaskRepository();
+        this.coldTrash = repository.hasColdTrash();
 
-        this.activeTasks = repository.loadActiveTasks();
-        this.deletedTasks = repository.loadDeletedTasks();
+        this.activeTasks = new TaskIndex();
+        this.deletedTasks = new TaskIndex();
 
+        this.flushIntervalMs = flushIntervalMs;
+        this.flushThreshold = Math.max(1, flushThreshold);
+        if (flushIntervalMs > 0) {
+            flusher = new ScheduledThreadPoolExecutor(1, runnable -> {
+                Thread thread = new Thread(runnable, "task-flusher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            // close() flushes itself rather than waiting out a scheduled flush
+            flusher.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+            shutdownHook = new Thread(this::close, "task-flush-on-exit");
+            Runtime.getRuntime().addShutdownHook(shutdownHook);
+        } else {
+            flusher = null;
+            shutdownHook = null;
+        }
+
+        load();
         runMaintenance();
-        updateLastId();
     }
 
-    private void updateLastId() {
-        int max1 = activeTasks.stream().mapToInt(Task::getId).max().orElse(0);
-        int max2 = deletedTasks.stream().mapToInt(Task::getId).max().orElse(0);
-        this.lastId = Math.max(max1, max2);
+    private void load() {
+        Metrics.Timer timer = Metrics.time(Metrics.Phase.LOAD);
+        try (timer) {
+            loadTasks();
+        }
+    }
+
+    private void loadTasks() {
+        activeTasks.clear();
+        deletedTasks.clear();
+        doneExpiry.clear();
+        trashExpiry.clear();
+        searchIndex = null;
+        queryIndex = null;
+        Arrays.fill(statusCounts, 0);
+        openSince.clear();
+        lastId = 0;
+
+        if (repository.isSharded()) {
+            // the rest is read on demand: a command touching one task reads one shard
+            partial = true;
+            lastId = repository.getLastId();
+            repository.forgetLoadedShards();
+            long nowMs = toMillis(LocalDateTime.now());
+            absorb(repository.loadShardsDueBefore(nowMs - DONE_RETENTION_MS, nowMs - TRASH_RETENTION_MS));
+            return;
+        }
+
+        // one pass over the loaded tasks builds the indexes, the schedules and lastId
+        for (Task task : repository.loadActiveTasks()) {
+            activeTasks.add(task);
+            count(task);
+            scheduleDone(task);
+            lastId = Math.max(lastId, task.getId());
+        }
+        if (coldTrash) {
+            // left on disk: the manifest has all startup needs
+            trashLoaded = false;
+            trashSize = repository.trashSize();
+            trashDueAt = repository.trashDueAt(TRASH_RETENTION_MS);
+            lastId = Math.max(lastId, repository.trashMaxId());
+            return;
+        }
+        for (Task task : repository.loadDeletedTasks()) {
+            deletedTasks.add(task);
+            schedulePurge(task);
+            lastId = Math.max(lastId, task.getId());
+        }
+    }
+
+    private void ensureTrashLoaded() {
+        ensureAllLoaded();
+        if (coldTrash && !trashLoaded) {
+            deletedTasks.clear();
+            deletedTasks.addAll(repository.loadDeletedTasks());
+            trashSize = deletedTasks.size();
+            trashLoaded = true;
+        }
     }
 
-    private void save() {
-        repository.saveAll(activeTasks, deletedTasks);
+    private int trashSize() {
+        return coldTrash ? trashSize : deletedTasks.size();
     }
 
-    public void addTask(String description) {
-        Task task = new Task(++lastId, description);
-        activeTasks.add(task);
-        save();
+    /** Adds tasks read from further shards, active and trashed alike, to everything built from the store. */
+    private void absorb(List<Task> tasks) {
+        for (Task task : tasks) {
+            if (task.isDeleted()) {
+                deletedTasks.add(task);
+                schedulePurge(task);
+            } else {
+                activeTasks.add(task);
+                count(task);
+                scheduleDone(task);
+                if (searchIndex != null)
+                    searchIndex.add(task);
+                if (queryIndex != null)
+                    queryIndex.add(task);
+            }
+            lastId = Math.max(lastId, task.getId());
+        }
+    }
+
+    private void ensureLoaded(int id) {
+        if (partial)
+            absorb(repository.loadShardOf(id));
+    }
+
+    private void ensureAllLoaded() {
+        if (partial) {
+            absorb(repository.loadRemainingShards());
+            partial = false;
+        }
+    }
+
+    /** Reloads the store if another process has written to it since it was loaded. */
+    public void refresh() {
+        lock.writeLock().lock();
+        try {
+            // unsaved changes would be lost; their commit merges and reloads instead
+            if (pending.isEmpty() && repository.isStale()) {
+                load();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Takes the read lock. If {@code ready} is false, {@code prepare} first
+     * loads or builds what the read needs, under the write lock, which is
+     * then downgraded so no change can slip in between.
+     */
+    private void lockForRead(BooleanSupplier ready, Runnable prepare) {
+        lock.readLock().lock();
+        if (ready.getAsBoolean())
+            return;
+        lock.readLock().unlock();
+        lock.writeLock().lock();
+        try {
+            prepare.run();
+            lock.readLock().lock();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    private static boolean isOpen(Task task) {
+        return task.getStatus() != Status.DONE;
+    }
+
+    /** Counts a task new to the store. */
+    private void count(Task task) {
+        statusCounts[task.getStatus().ordinal()]++;
+        if (isOpen(task))
+            trackOpen(task);
+    }
+
+    /**
+     * Pushes the task's entry into openSince. An open task's entry stays
+     * valid, so this is only for tasks that were not open before; entries of
+     * tasks closed or deleted since are dropped lazily, and the heap is
+     * rebuilt once they make up most of it.
+     */
+    private void trackOpen(Task task) {
+        openSince.add(task.getId(), task.getCreatedAtMillis());
+        int open = activeTasks.size() - statusCounts[Status.DONE.ordinal()];
+        if (openSince.size() > 2 * open + 16) {
+            openSince.clear();
+            for (Task t : activeTasks) {
+                if (isOpen(t))
+                    openSince.add(t.getId(), t.getCreatedAtMillis());
+            }
+        }
+    }
+
+    private void scheduleDone(Task task) {
+        if (task.getStatus() == Status.DONE)
+            doneExpiry.add(task.getId(), task.getUpdatedAtMillis() + DONE_RETENTION_MS);
+    }
+
+    private void schedulePurge(Task task) {
+        if (task.isDeleted())
+            trashExpiry.add(task.getId(), task.getDeletedAtMillis() + TRASH_RETENTION_MS);
+    }
+
+    /** Until {@link #endBatch()}, changes stay in memory and are only persisted by {@link #flushBatch()}. */
+    public void beginBatch() {
+        batching = true;
+    }
+
+    /** Persists everything changed since the batch began or was last flushed, in one commit. */
+    public void flushBatch() {
+        flush();
+    }
+
+    public void endBatch() {
+        batching = false;
+        flushBatch();
+    }
+
+    /** Queues a change for the next commit; returns its number for {@link #save(long)}. Write lock held. */
+    private long changed(Mutation mutation) {
+        pending.add(mutation);
+        return ++appliedSeq;
+    }
+
+    /**
+     * Returns once change {@code ticket} is persisted, or when writing behind,
+     * once a flush is on its way. Must be called without holding the lock.
+     */
+    private void save(long ticket) {
+        if (batching)
+            return;
+        if (flusher == null || closed) {
+            commitThrough(ticket);
+        } else if (ticket - committedSeq >= flushThreshold) {
+            if (flushQueued.compareAndSet(false, true))
+                flusher.execute(() -> {
+                    flushQueued.set(false);
+                    flush();
+                });
+        } else if (flushScheduled.compareAndSet(false, true)) {
+            flusher.schedule(() -> {
+                // cleared first, so a change made during this flush schedules the next one
+                flushScheduled.set(false);
+                flush();
+            }, flushIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /** Persists every change made so far, in one commit, before returning. */
+    public void flush() {
+        commitThrough(Long.MAX_VALUE);
+    }
+
+    /**
+     * Persists every pending change, and the search index if one was built,
+     * and stops the background flusher. The service stays usable, but from
+     * then on writes through.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        if (flusher != null) {
+            flusher.shutdown();
+            try {
+                // a flush already running completes; scheduled ones are dropped for the one below
+                flusher.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException e) {
+                // already exiting: this is the hook
+            }
+        }
+        flush();
+        saveSearchIndex();
+    }
+
+    private void commitThrough(long ticket) {
+        commitLock.lock();
+        try {
+            // while another thread commits, wait without the lock: its commit may cover this change
+            while (committing && committedSeq < ticket)
+                commitDone.awaitUninterruptibly();
+            if (committedSeq >= ticket)
+                return;
+            committing = true;
+        } finally {
+            commitLock.unlock();
+        }
+
+        long seq = 0;
+        boolean done = false;
+        try {
+            boolean written = false;
+            lock.writeLock().lock();
+            try {
+                seq = appliedSeq;
+                if (!pending.isEmpty() || repository.hasTrashToExpire())
+                    written = commitPending();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            // synced without the write lock: changes made meanwhile queue up and are synced together by the next commit
+            if (written) {
+                TaskStats stats = unpublishedStats;
+                if (repository.finishCommit() && stats != null) {
+                    stats.write(unpublishedGeneration);
+                    statsGeneration = unpublishedGeneration;
+                }
+                unpublishedStats = null;
+            }
+            done = true;
+        } finally {
+            commitLock.lock();
+            try {
+                committing = false;
+                if (done)
+                    committedSeq = seq;
+                commitDone.signalAll();
+            } finally {
+                commitLock.unlock();
+            }
+        }
+    }
+
+    /** Writes the pending changes; returns true if they are still to be synced by finishCommit. */
+    private boolean commitPending() {
+        boolean merged = repository.prepareCommit(activeTasks, deletedTasks, pending);
+        pending.clear();
+        if (merged) {
+            // another process committed first; pick up its changes along with ours
+            boolean published = repository.finishCommit();
+            load();
+            if (published)
+                writeStats();
+            return false;
+        }
+        // counted now, while they match the commit; counts over part of a sharded store would be wrong
+        if (!partial) {
+            unpublishedStats = computeStats();
+            unpublishedGeneration = repository.getGeneration();
+        }
+        return true;
+    }
+
+    public Task addTask(String description) {
+        Task task;
+        long ticket;
+        lock.writeLock().lock();
+        try {
+            // the new task's shard is rewritten with it, so the rest of that shard must be in memory
+            ensureLoaded(lastId + 1);
+            task = new Task(++lastId, description);
+            activeTasks.add(task);
+            count(task);
+            if (searchIndex != null)
+                searchIndex.add(task);
+            if (queryIndex != null)
+                queryIndex.add(task);
+            ticket = changed(Mutation.add(task));
+        } finally {
+            lock.writeLock().unlock();
+        }
+        save(ticket);
+        return task;
     }
 
     public Optional<Task> findById(int id) {
-        return activeTasks.stream().filter(t -> t.getId() == id).findFirst();
+        return findById(id, task -> task);
+    }
+
+    /**
+     * Applies {@code view} to the active task with this id while holding the
+     * read lock, so it sees the task as no concurrent change has half-made it.
+     */
+    public <T> Optional<T> findById(int id, Function<? super Task, T> view) {
+        lockForRead(() -> !partial, () -> ensureLoaded(id));
+        try {
+            Task task = activeTasks.get(id);
+            return task == null ? Optional.empty() : Optional.of(view.apply(task));
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     public boolean updateStatus(int id, Status status) {
-        Optional<Task> task = findById(id);
-        if (task.isPresent()) {
-            task.get().setStatus(status);
-            save();
-            return true;
+        long ticket;
+        lock.writeLock().lock();
+        try {
+            ensureLoaded(id);
+            Task task = activeTasks.get(id);
+            if (task == null)
+                return false;
+            // the query index orders by status and update time, which are about to change
+            if (queryIndex != null)
+                queryIndex.remove(task);
+            boolean wasOpen = isOpen(task);
+            statusCounts[task.getStatus().ordinal()]--;
+            task.setStatus(status);
+            statusCounts[task.getStatus().ordinal()]++;
+            if (!wasOpen && isOpen(task))
+                trackOpen(task);
+            if (queryIndex != null)
+                queryIndex.add(task);
+            scheduleDone(task);
+            ticket = changed(Mutation.put(task));
+        } finally {
+            lock.writeLock().unlock();
         }
-        return false;
+        save(ticket);
+        return true;
     }
 
     public boolean delete(int id) {
-        Optional<Task> task = findById(id);
-        if (task.isPresent()) {
-            Task t = task.get();
-            activeTasks.remove(t);
-            t.setDeletedAt(LocalDateTime.now());
+        long ticket;
+        lock.writeLock().lock();
+        try {
+            if (!moveToTrash(id, LocalDateTime.now()))
+                return false;
+            ticket = appliedSeq;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        save(ticket);
+        return true;
+    }
+
+    private boolean moveToTrash(int id, LocalDateTime now) {
+        ensureLoaded(id);
+        Task t = activeTasks.remove(id);
+        if (t == null)
+            return false;
+        if (searchIndex != null)
+            searchIndex.remove(t);
+        if (queryIndex != null)
+            queryIndex.remove(t);
+        statusCounts[t.getStatus().ordinal()]--;
+        t.setDeletedAt(now);
+        if (coldTrash) {
+            trashSize++;
+            trashDueAt = Math.min(trashDueAt, TaskRepository.trashDueAt(t.getDeletedAtMillis(), TRASH_RETENTION_MS));
+            if (trashLoaded)
+                deletedTasks.add(t);
+        } else {
             deletedTasks.add(t);
-            save();
-            return true;
+            schedulePurge(t);
+        }
+        changed(Mutation.delete(t));
+        return true;
+    }
+
+    /**
+     * Moves DONE tasks older than 24h to the trash and purges trash older than
+     * 7 days. Only entries that are actually due are popped from the schedules,
+     * and everything is persisted in a single commit.
+     */
+    public void runMaintenance() {
+        Metrics.Timer timer = Metrics.time(Metrics.Phase.MAINTENANCE);
+        try (timer) {
+            maintain();
+        }
+    }
+
+    private void maintain() {
+        lock.writeLock().lock();
+        try {
+            expire(LocalDateTime.now());
+            if (pending.isEmpty() && !repository.hasTrashToExpire())
+                return;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        save(Long.MAX_VALUE);
+    }
+
+    private void expire(LocalDateTime now) {
+        long nowMs = toMillis(now);
+
+        while (doneExpiry.hasDue(nowMs)) {
+            int id = doneExpiry.peekId();
+            long due = doneExpiry.peekDue();
+            doneExpiry.poll();
+
+            // skip entries made stale by a later status change
+            Task task = activeTasks.get(id);
+            if (task != null && task.getStatus() == Status.DONE
+                    && task.getUpdatedAtMillis() + DONE_RETENTION_MS == due) {
+                moveToTrash(id, now);
+            }
+        }
+
+        while (trashExpiry.hasDue(nowMs)) {
+            int id = trashExpiry.peekId();
+            long due = trashExpiry.peekDue();
+            trashExpiry.poll();
+
+            Task task = deletedTasks.get(id);
+            if (task != null && task.isDeleted()
+                    && task.getDeletedAtMillis() + TRASH_RETENTION_MS == due) {
+                deletedTasks.remove(id);
+                changed(Mutation.purge(id));
+            }
+        }
+
+        // the cold trash expires a whole day segment at a time, on disk, without loading it; same commit as the rest
+        if (coldTrash && trashDueAt <= nowMs) {
+            trashSize -= repository.expireTrashBefore(nowMs - TRASH_RETENTION_MS);
+            trashDueAt = repository.trashDueAt(TRASH_RETENTION_MS);
+            if (trashLoaded) {
+                deletedTasks.clear();
+                trashLoaded = false;
+            }
+        }
+    }
+
+    /**
+     * Active tasks whose description matches the query, in id order. Terms
+     * are ANDed, {@code OR} separates alternatives and {@code term*} matches
+     * a prefix.
+     */
+    public List<Task> search(String query) {
+        lockForRead(() -> !partial && searchIndex != null, this::prepareSearch);
+        try {
+            int[] ids = searchIndex.search(query);
+            List<Task> result = new ArrayList<>(ids.length);
+            for (int id : ids) {
+                Task task = activeTasks.get(id);
+                if (task != null)
+                    result.add(task);
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
         }
-        return false;
     }
 
-    private void runMaintenance() {
-        activeTasks.stream()
-                .filter(t -> t.getStatus() == Status.DONE &&
-                        ChronoUnit.HOURS.between(t.getUpdatedAt(), LocalDateTime.now()) >= 24)
-                .toList()
-                .forEach(t -> delete(t.getId()));
+    /** Kept up to date by every change once built; saved for the next process by {@link #close()}. */
+    private void prepareSearch() {
+        ensureAllLoaded();
+        if (searchIndex != null)
+            return;
+        long generation = repository.getGeneration();
+        // the saved index is that of the generation only with nothing left to commit or being synced
+        if (pending.isEmpty() && unpublishedStats == null)
+            searchIndex = SearchIndex.read(generation);
+        if (searchIndex == null) {
+            searchIndex = SearchIndex.build(activeTasks);
+            searchIndexGeneration = -1;
+        } else {
+            searchIndexGeneration = generation;
+        }
+    }
+
+    private void saveSearchIndex() {
+        lock.writeLock().lock();
+        try {
+            long generation = repository.getGeneration();
+            if (searchIndex != null && !partial && generation >= 0 && generation != searchIndexGeneration
+                    && pending.isEmpty() && unpublishedStats == null) {
+                searchIndex.write(generation);
+                searchIndexGeneration = generation;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Active tasks matching the query, one page of them. The result is a
+     * lazy view over the indexes rather than a copy, so it must be consumed
+     * before the next change to the service; with other threads changing it,
+     * use {@link #list(TaskQuery, Consumer)}.
+     */
+    public Stream<Task> list(TaskQuery query) {
+        lock.writeLock().lock();
+        try {
+            prepareList(query);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return page(query);
+    }
+
+    /** Passes each task of the page to {@code action} while holding the read lock. */
+    public void list(TaskQuery query, Consumer<? super Task> action) {
+        lockForRead(() -> !partial && (query.isUnfiltered() || queryIndex != null), () -> prepareList(query));
+        try {
+            page(query).forEach(action);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
 
-        deletedTasks.removeIf(t -> t.getDeletedAt() != null &&
-                ChronoUnit.DAYS.between(t.getDeletedAt(), LocalDateTime.now()) >= 7);
+    private void prepareList(TaskQuery query) {
+        ensureAllLoaded();
+        if (!query.isUnfiltered() && queryIndex == null)
+            queryIndex = TaskQueryIndex.build(activeTasks);
+    }
+
+    private Stream<Task> page(TaskQuery query) {
+        Iterator<Task> matches = query.isUnfiltered() ? activeTasks.iterator() : queryIndex.select(query, activeTasks);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(matches, Spliterator.ORDERED), false)
+                .skip(query.getOffset())
+                .limit(query.getLimit());
+    }
+
+    /** Counts by status, trash size and oldest open task, from counters kept up to date by every change. */
+    public TaskStats getStats() {
+        // takes the write lock: finding the oldest open task drops stale schedule entries
+        lock.writeLock().lock();
+        try {
+            ensureAllLoaded();
+            TaskStats stats = computeStats();
+            long generation = repository.getGeneration();
+            // only if the counts are those of that generation: nothing left to commit or being synced
+            if (generation >= 0 && generation != statsGeneration && pending.isEmpty() && unpublishedStats == null) {
+                // lets the next process answer without loading the store
+                stats.write(generation);
+                statsGeneration = generation;
+            }
+            return stats;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private TaskStats computeStats() {
+        // entries for tasks that were closed, deleted or reopened later are dropped here
+        while (openSince.size() > 0) {
+            Task task = activeTasks.get(openSince.peekId());
+            if (task != null && isOpen(task) && task.getCreatedAtMillis() == openSince.peekDue())
+                break;
+            openSince.poll();
+        }
+        Task oldest = openSince.size() > 0 ? activeTasks.get(openSince.peekId()) : null;
+
+        EnumMap<Status, Integer> counts = new EnumMap<>(Status.class);
+        for (Status status : Status.values()) {
+            counts.put(status, statusCounts[status.ordinal()]);
+        }
+        long maintenanceDueAt = Math.min(doneExpiry.size() > 0 ? doneExpiry.peekDue() : Long.MAX_VALUE,
+                coldTrash ? trashDueAt : trashExpiry.size() > 0 ? trashExpiry.peekDue() : Long.MAX_VALUE);
+
+        return new TaskStats(counts, trashSize(), oldest == null ? 0 : oldest.getId(),
+                oldest == null ? null : oldest.getCreatedAt(), maintenanceDueAt);
+    }
+
+    /**
+     * Stats saved by the last process to write the store, if nothing has
+     * changed since and no task is due for maintenance. Does not load the store.
+     */
+    public static Optional<TaskStats> readSavedStats() {
+        return Optional.ofNullable(TaskStats.read(new TaskRepository().currentGeneration(),
+                toMillis(LocalDateTime.now())));
+    }
+
+    /** Streams the whole store, trash included, without loading it; see {@link TaskRepository#exportTasks}. */
+    public static void exportAll(Consumer<? super Task> action) throws IOException {
+        new TaskRepository().exportTasks(action);
+    }
+
+    /** Adds tasks to the store one at a time, without loading it; see {@link TaskRepository#importTasks}. */
+    public static int importAll(Iterator<Task> tasks, boolean replace) throws IOException {
+        return new TaskRepository().importTasks(tasks, replace);
+    }
+
+    private void writeStats() {
+        long generation = repository.getGeneration();
+        // counts over part of a sharded store would be wrong
+        if (generation >= 0 && !partial) {
+            computeStats().write(generation);
+            statsGeneration = generation;
+        }
     }
 
     public List<Task> getActive() {
-        return List.copyOf(activeTasks);
+        lockForRead(() -> !partial, this::ensureAllLoaded);
+        try {
+            return List.copyOf(activeTasks);
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     public List<Task> getDeleted() {
-        return List.copyOf(deletedTasks);
+        lockForRead(() -> !partial && (!coldTrash || trashLoaded), this::ensureTrashLoaded);
+        try {
+            return List.copyOf(deletedTasks);
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     public void emptyTrash() {
-        deletedTasks.clear();
-        save();
+        long ticket;
+        lock.writeLock().lock();
+        try {
+            deletedTasks.clear();
+            trashExpiry.clear();
+            trashSize = 0;
+            trashDueAt = Long.MAX_VALUE;
+            ticket = changed(Mutation.clearTrash());
+        } finally {
+            lock.writeLock().unlock();
+        }
+        save(ticket);
     }
-}
\ No newline at end of file
+}
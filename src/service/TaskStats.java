@@ -0,0 +1,114 @@
+package service;
+
+import model.Status;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Task counts by status, trash size and the oldest open task. Also saved to
+ * {@code tasks.stats}, tagged with the store generation, so it can be
+ * answered without loading the store while nothing has changed.
+ */
+public class TaskStats {
+
+    static final Path STATS_PATH = Path.of("tasks.stats");
+
+    private final EnumMap<Status, Integer> counts;
+    private final int trash;
+    private final int oldestOpenId;
+    private final LocalDateTime oldestOpenCreatedAt;
+
+    // when the next DONE task or trashed task expires; saved counts are stale from then on
+    private final long maintenanceDueAt;
+
+    TaskStats(EnumMap<Status, Integer> counts, int trash, int oldestOpenId,
+            LocalDateTime oldestOpenCreatedAt, long maintenanceDueAt) {
+        this.counts = counts;
+        this.trash = trash;
+        this.oldestOpenId = oldestOpenId;
+        this.oldestOpenCreatedAt = oldestOpenCreatedAt;
+        this.maintenanceDueAt = maintenanceDueAt;
+    }
+
+    public int getCount(Status status) {
+        return counts.getOrDefault(status, 0);
+    }
+
+    public int getTrash() {
+        return trash;
+    }
+
+    /** Id of the oldest TODO or IN_PROGRESS task, or 0 if there is none. */
+    public int getOldestOpenId() {
+        return oldestOpenId;
+    }
+
+    public LocalDateTime getOldestOpenCreatedAt() {
+        return oldestOpenCreatedAt;
+    }
+
+    /** Returns the saved stats if they were written for {@code generation} and are not yet outdated by maintenance. */
+    static TaskStats read(long generation, long nowMs) {
+        Map<String, String> values = new HashMap<>();
+        try {
+            for (String line : Files.readAllLines(STATS_PATH)) {
+                int eq = line.indexOf('=');
+                if (eq > 0)
+                    values.put(line.substring(0, eq), line.substring(eq + 1));
+            }
+            if (generation < 0 || Long.parseLong(values.get("generation")) != generation)
+                return null;
+            long dueAt = Long.parseLong(values.get("maintenanceDueAt"));
+            if (dueAt <= nowMs)
+                return null;
+
+            EnumMap<Status, Integer> counts = new EnumMap<>(Status.class);
+            for (Status status : Status.values()) {
+                counts.put(status, Integer.parseInt(values.get(status.name())));
+            }
+            long oldest = Long.parseLong(values.get("oldestOpenCreatedAt"));
+            return new TaskStats(counts, Integer.parseInt(values.get("trash")),
+                    Integer.parseInt(values.get("oldestOpenId")),
+                    oldest < 0 ? null : LocalDateTime.ofInstant(Instant.ofEpochMilli(oldest), ZoneOffset.UTC),
+                    dueAt);
+        } catch (IOException | RuntimeException e) {
+            // missing or unreadable: the caller loads the store instead
+            return null;
+        }
+    }
+
+    void write(long generation) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("generation=").append(generation).append('\n');
+        for (Status status : Status.values()) {
+            sb.append(status.name()).append('=').append(getCount(status)).append('\n');
+        }
+        sb.append("trash=").append(trash).append('\n');
+        sb.append("oldestOpenId=").append(oldestOpenId).append('\n');
+        sb.append("oldestOpenCreatedAt=").append(oldestOpenCreatedAt == null ? -1
+                : oldestOpenCreatedAt.toInstant(ZoneOffset.UTC).toEpochMilli()).append('\n');
+        sb.append("maintenanceDueAt=").append(maintenanceDueAt).append('\n');
+
+        try {
+            // several processes may write it at once, so each uses its own temp file
+            Path tmp = Files.createTempFile(STATS_PATH.toAbsolutePath().getParent(), "tasks.stats", ".tmp");
+            try {
+                Files.writeString(tmp, sb);
+                Files.move(tmp, STATS_PATH, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        } catch (IOException e) {
+            System.err.println("[WARN] Não foi possível gravar " + STATS_PATH + ": " + e.getMessage());
+        }
+    }
+}
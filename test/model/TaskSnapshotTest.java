@@ -0,0 +1,47 @@
+package model;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The snapshot is written in chunks, so a description longer than one chunk
+ * must come back whole; and it must load what parsing tasks.json would,
+ * which stores descriptions stripped.
+ */
+public final class TaskSnapshotTest {
+
+    private static final Path SNAPSHOT = Path.of("tasks.json.cache");
+    private static final long[] STAMP = {1, 2, 3};
+
+    public static void main(String[] args) throws IOException {
+        if (!Boolean.getBoolean("test.scratch")) {
+            System.err.println("Execute via scripts/test.sh: os testes sobrescrevem tasks.json no diretório atual.");
+            System.exit(1);
+        }
+
+        String longDescription = "x".repeat(200_000) + "ç";
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 1; i <= 5000; i++)
+            tasks.add(new Task(i, "Tarefa " + i));
+        tasks.add(new Task(5001, longDescription));
+        tasks.add(new Task(5002, "  com espaços  "));
+        TaskSnapshot.write(SNAPSHOT, tasks, STAMP);
+
+        List<Task> read = TaskSnapshot.read(SNAPSHOT, STAMP);
+        check(read != null && read.size() == tasks.size(), "snapshot não foi lido de volta");
+        check(read.get(4999).getDescription().equals("Tarefa 5000"), "registro errado: " + read.get(4999));
+        check(read.get(5000).getDescription().equals(longDescription), "a descrição longa não voltou inteira");
+        check(read.get(5001).getDescription().equals("com espaços"),
+                "descrição diferente da do JSON: \"" + read.get(5001).getDescription() + "\"");
+        check(TaskSnapshot.read(SNAPSHOT, new long[] {1, 2, 4}) == null, "snapshot de outra versão foi aceito");
+
+        System.out.println("[INFO] TaskSnapshotTest: ok");
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition)
+            throw new AssertionError(message);
+    }
+}
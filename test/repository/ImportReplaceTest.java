@@ -0,0 +1,42 @@
+package repository;
+
+import model.Task;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * import --replace keeps ids as given, but a file with the same id twice
+ * must not leave two tasks under it: the repeat gets the next free id.
+ */
+public final class ImportReplaceTest {
+
+    public static void main(String[] args) throws IOException {
+        if (!Boolean.getBoolean("test.scratch")) {
+            System.err.println("Execute via scripts/test.sh: os testes sobrescrevem tasks.json no diretório atual.");
+            System.exit(1);
+        }
+
+        for (boolean journaled : new boolean[] { false, true }) {
+            List<Task> tasks = List.of(new Task(3, "Três"), new Task(7, "Sete"), new Task(3, "Outra três"),
+                    new Task(8, "Oito"), new Task(7, "Outra sete"));
+            check(new TaskRepository(journaled).importTasks(tasks.iterator(), true) == 5, "importadas != 5");
+
+            List<Integer> ids = new ArrayList<>();
+            new TaskRepository(journaled).exportTasks(task -> ids.add(task.getId()));
+            Set<Integer> unique = new HashSet<>(ids);
+            check(ids.size() == 5 && unique.size() == 5, "ids repetidos com journaled=" + journaled + ": " + ids);
+            check(unique.containsAll(List.of(3, 7, 8)), "ids dados não foram mantidos: " + ids);
+        }
+
+        System.out.println("[INFO] ImportReplaceTest: ok");
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition)
+            throw new AssertionError(message);
+    }
+}
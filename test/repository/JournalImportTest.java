@@ -0,0 +1,46 @@
+package repository;
+
+import model.Task;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An import into a journal store is appended a chunk at a time within one
+ * commit; every chunk must survive, not only the last one.
+ */
+public final class JournalImportTest {
+
+    private static final int TASKS = 2500;
+
+    public static void main(String[] args) throws Exception {
+        if (!Boolean.getBoolean("test.scratch")) {
+            System.err.println("Execute via scripts/test.sh: os testes sobrescrevem tasks.json no diretório atual.");
+            System.exit(1);
+        }
+
+        // a recorded journal length to cut back to, as any earlier commit leaves
+        TaskRepository setup = new TaskRepository(true);
+        List<Task> active = new ArrayList<>(setup.loadActiveTasks());
+        setup.loadDeletedTasks();
+        Task first = new Task(1, "Antes do import");
+        active.add(first);
+        setup.commit(active, List.of(), List.of(Mutation.add(first)));
+
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < TASKS; i++)
+            tasks.add(new Task(0, "Importada " + i));
+        int imported = new TaskRepository(true).importTasks(tasks.iterator(), false);
+        check(imported == TASKS, "importadas: " + imported);
+
+        int loaded = new TaskRepository(true).loadActiveTasks().size();
+        check(loaded == TASKS + 1, "tarefas depois do import: " + loaded);
+
+        System.out.println("[INFO] JournalImportTest: ok");
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition)
+            throw new AssertionError(message);
+    }
+}
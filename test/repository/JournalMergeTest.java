@@ -0,0 +1,72 @@
+package repository;
+
+import model.Status;
+import model.Task;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Two repositories on one journal store, as two processes would be: one
+ * deletes a task while the other, loaded before the delete, updates it. The
+ * stale update must be dropped by the merge and never reach the journal, or
+ * replaying it would bring the task back while it is also in the trash.
+ */
+public final class JournalMergeTest {
+
+    public static void main(String[] args) {
+        if (!Boolean.getBoolean("test.scratch")) {
+            System.err.println("Execute via scripts/test.sh: os testes sobrescrevem tasks.json no diretório atual.");
+            System.exit(1);
+        }
+
+        TaskRepository setup = new TaskRepository(true);
+        List<Task> active = new ArrayList<>(setup.loadActiveTasks());
+        setup.loadDeletedTasks();
+        Task task = new Task(1, "Escrever o relatório");
+        active.add(task);
+        setup.commit(active, List.of(), List.of(Mutation.add(task)));
+
+        TaskRepository a = new TaskRepository(true);
+        List<Task> activeA = new ArrayList<>(a.loadActiveTasks());
+        a.loadDeletedTasks();
+
+        TaskRepository b = new TaskRepository(true);
+        List<Task> activeB = new ArrayList<>(b.loadActiveTasks());
+        List<Task> deletedB = new ArrayList<>(b.loadDeletedTasks());
+        Task deleted = activeB.remove(0);
+        deleted.setDeletedAt(deleted.getUpdatedAt());
+        deletedB.add(deleted);
+        check(!b.commit(activeB, deletedB, List.of(Mutation.delete(deleted))), "o delete não deveria ser um merge");
+
+        Task updated = activeA.get(0);
+        updated.setStatus(Status.IN_PROGRESS);
+        check(a.commit(activeA, List.of(), List.of(Mutation.put(updated))), "o update obsoleto deveria ser um merge");
+
+        TaskRepository reader = new TaskRepository(true);
+        List<Task> finalActive = reader.loadActiveTasks();
+        List<Task> finalDeleted = reader.loadDeletedTasks();
+        check(finalActive.isEmpty(), "#1 voltou a ficar ativa: " + finalActive);
+        check(finalDeleted.size() == 1 && finalDeleted.get(0).getStatus() == Status.TODO,
+                "#1 deveria estar na lixeira, sem o update: " + finalDeleted);
+        check(!readJournal().contains("put "), "o journal registrou o update descartado");
+
+        System.out.println("[INFO] JournalMergeTest: ok");
+    }
+
+    private static String readJournal() {
+        try {
+            return Files.readString(Path.of("tasks.journal"));
+        } catch (IOException e) {
+            throw new AssertionError("tasks.journal não pôde ser lido", e);
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition)
+            throw new AssertionError(message);
+    }
+}
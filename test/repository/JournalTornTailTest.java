@@ -0,0 +1,68 @@
+package repository;
+
+import model.Task;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A crash mid-append leaves part of a record at the end of the journal. The
+ * next commit must not be glued onto it, with or without a committed length
+ * in tasks.version (stores written before it was kept have none).
+ */
+public final class JournalTornTailTest {
+
+    private static final Path JOURNAL = Path.of("tasks.journal");
+    private static final Path VERSION = Path.of("tasks.version");
+
+    public static void main(String[] args) throws IOException {
+        if (!Boolean.getBoolean("test.scratch")) {
+            System.err.println("Execute via scripts/test.sh: os testes sobrescrevem tasks.json no diretório atual.");
+            System.exit(1);
+        }
+
+        add("Primeira");
+        tear();
+        add("Segunda");
+        check(descriptions().equals(List.of("Primeira", "Segunda")), "com o tamanho gravado: " + descriptions());
+
+        // as left by an older version: only the generation
+        Files.writeString(VERSION, Files.readString(VERSION).strip().split(" ")[0]);
+        tear();
+        add("Terceira");
+        check(descriptions().equals(List.of("Primeira", "Segunda", "Terceira")), "sem o tamanho gravado: " + descriptions());
+
+        System.out.println("[INFO] JournalTornTailTest: ok");
+    }
+
+    private static void add(String description) {
+        TaskRepository repository = new TaskRepository(true);
+        List<Task> active = new ArrayList<>(repository.loadActiveTasks());
+        repository.loadDeletedTasks();
+        int id = active.stream().mapToInt(Task::getId).max().orElse(0) + 1;
+        Task task = new Task(id, description);
+        active.add(task);
+        repository.commit(active, List.of(), List.of(Mutation.add(task)));
+    }
+
+    /** The first part of a record, as a crashed append leaves it. */
+    private static void tear() throws IOException {
+        Files.writeString(JOURNAL, "put {\"id\":1,\"descrip", StandardOpenOption.APPEND);
+    }
+
+    private static List<String> descriptions() {
+        List<String> descriptions = new ArrayList<>();
+        for (Task task : new TaskRepository(true).loadActiveTasks())
+            descriptions.add(task.getDescription());
+        return descriptions;
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition)
+            throw new AssertionError(message);
+    }
+}